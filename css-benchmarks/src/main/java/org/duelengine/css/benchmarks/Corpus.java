@@ -0,0 +1,69 @@
+package org.duelengine.css.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+import org.duelengine.css.parsing.CssParser.Syntax;
+
+/**
+ * Representative stylesheets used as benchmark input
+ */
+public final class Corpus {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// copies of the medium source concatenated to form the huge source (~2MB of CSS)
+	private static final int HUGE_COPIES = 500;
+
+	private Corpus() {}
+
+	/**
+	 * Loads the source text
+	 * @param size "small", "medium" or "huge"
+	 * @param syntax
+	 * @return
+	 * @throws IOException
+	 */
+	public static String load(String size, Syntax syntax)
+		throws IOException {
+
+		String ext = (syntax == Syntax.LESS) ? ".less" : ".css";
+
+		if ("huge".equals(size)) {
+			String medium = read("medium"+ext);
+			StringBuilder buffer = new StringBuilder((medium.length()+1) * HUGE_COPIES);
+			for (int i=0; i<HUGE_COPIES; i++) {
+				buffer.append(medium).append('\n');
+			}
+			return buffer.toString();
+		}
+
+		return read(size+ext);
+	}
+
+	private static String read(String name)
+		throws IOException {
+
+		InputStream stream = Corpus.class.getResourceAsStream(name);
+		if (stream == null) {
+			throw new IOException("Missing corpus file: "+name);
+		}
+
+		Reader reader = new InputStreamReader(stream, UTF8);
+		try {
+			StringBuilder buffer = new StringBuilder();
+			char[] chunk = new char[4096];
+			int count;
+			while ((count = reader.read(chunk)) >= 0) {
+				buffer.append(chunk, 0, count);
+			}
+			return buffer.toString();
+
+		} finally {
+			reader.close();
+		}
+	}
+}
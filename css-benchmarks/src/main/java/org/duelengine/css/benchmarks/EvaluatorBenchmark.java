@@ -0,0 +1,111 @@
+package org.duelengine.css.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.duelengine.css.ast.ColorNode;
+import org.duelengine.css.ast.CssNode;
+import org.duelengine.css.ast.NumericNode;
+import org.duelengine.css.ast.OperatorNode;
+import org.duelengine.css.ast.ValueNode;
+import org.duelengine.css.codegen.ArithmeticEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ArithmeticEvaluator throughput over typical LESS declaration expressions
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class EvaluatorBenchmark {
+
+	// terms in the long expression
+	private static final int LONG_TERMS = 64;
+
+	@Param({ "simple", "color", "nested", "long" })
+	public String expression;
+
+	private List<CssNode> expr;
+	private final ArithmeticEvaluator evaluator = new ArithmeticEvaluator();
+
+	@Setup
+	public void setup() {
+		if ("simple".equals(expression)) {
+			// 1px + 2px * 3
+			expr = Arrays.<CssNode>asList(
+				new NumericNode("1px"),
+				new OperatorNode("+"),
+				new NumericNode("2px"),
+				new OperatorNode("*"),
+				new NumericNode("3"));
+
+		} else if ("color".equals(expression)) {
+			// (#111 + #222) * 1.5
+			expr = Arrays.<CssNode>asList(
+				new OperatorNode("("),
+				new ColorNode("#111"),
+				new OperatorNode("+"),
+				new ColorNode("#222"),
+				new OperatorNode(")"),
+				new OperatorNode("*"),
+				new NumericNode("1.5"));
+
+		} else if ("nested".equals(expression)) {
+			// ((10px + 2px) * (3 - 1)) / 4 0 auto
+			expr = Arrays.<CssNode>asList(
+				new OperatorNode("("),
+				new OperatorNode("("),
+				new NumericNode("10px"),
+				new OperatorNode("+"),
+				new NumericNode("2px"),
+				new OperatorNode(")"),
+				new OperatorNode("*"),
+				new OperatorNode("("),
+				new NumericNode("3"),
+				new OperatorNode("-"),
+				new NumericNode("1"),
+				new OperatorNode(")"),
+				new OperatorNode(")"),
+				new OperatorNode("/"),
+				new NumericNode("4"),
+				new NumericNode("0"),
+				new ValueNode("auto"));
+
+		} else {
+			// 1px + 2px * 3 - 4px / 2 + ...
+			String[] ops = { "+", "*", "-", "/" };
+			expr = new ArrayList<CssNode>(LONG_TERMS * 2);
+			for (int i=0; i<LONG_TERMS; i++) {
+				if (i > 0) {
+					expr.add(new OperatorNode(ops[i % ops.length]));
+				}
+				expr.add(new NumericNode((i+1)+"px"));
+			}
+		}
+	}
+
+	@Benchmark
+	public ValueNode eval() {
+		return ArithmeticEvaluator.eval(expr);
+	}
+
+	@Benchmark
+	public ValueNode evaluateReused() {
+		return evaluator.evaluate(expr);
+	}
+}
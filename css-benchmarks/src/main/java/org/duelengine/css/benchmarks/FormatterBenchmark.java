@@ -0,0 +1,69 @@
+package org.duelengine.css.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.duelengine.css.ast.StyleSheetNode;
+import org.duelengine.css.codegen.CodeGenSettings;
+import org.duelengine.css.codegen.CssFormatter;
+import org.duelengine.css.parsing.CssLexer;
+import org.duelengine.css.parsing.CssParser;
+import org.duelengine.css.parsing.CssParser.Syntax;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CssFormatter throughput for compact and pretty-printed output
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class FormatterBenchmark {
+
+	@Param({ "small", "medium", "huge" })
+	public String size;
+
+	@Param({ "CSS", "LESS" })
+	public Syntax syntax;
+
+	@Param({ "compact", "pretty" })
+	public String mode;
+
+	private StyleSheetNode stylesheet;
+	private CssFormatter formatter;
+	private int capacity;
+
+	@Setup
+	public void setup() throws IOException {
+		String source = Corpus.load(size, syntax);
+		stylesheet = new CssParser(syntax).parse(new CssLexer(source, syntax));
+		capacity = source.length();
+
+		CodeGenSettings settings = new CodeGenSettings();
+		if ("pretty".equals(mode)) {
+			settings.setIndent("\t");
+			settings.setNewline("\n");
+			settings.setInlineBraces(true);
+		}
+		formatter = new CssFormatter(settings);
+	}
+
+	@Benchmark
+	public int write() throws IOException {
+		StringBuilder output = new StringBuilder(capacity);
+		formatter.write(output, stylesheet);
+		return output.length();
+	}
+}
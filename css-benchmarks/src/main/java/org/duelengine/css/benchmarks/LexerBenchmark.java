@@ -0,0 +1,80 @@
+package org.duelengine.css.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.duelengine.css.parsing.CssLexer;
+import org.duelengine.css.parsing.CssParser.Syntax;
+import org.duelengine.css.parsing.CssTokenBuffer;
+import org.duelengine.css.parsing.CssTokenType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CssLexer tokenization throughput
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class LexerBenchmark {
+
+	@Param({ "small", "medium", "huge" })
+	public String size;
+
+	@Param({ "CSS", "LESS" })
+	public Syntax syntax;
+
+	private String source;
+
+	@Setup
+	public void setup() throws IOException {
+		source = Corpus.load(size, syntax);
+	}
+
+	@Benchmark
+	public int tokenize() {
+		return count(new CssLexer(source, syntax));
+	}
+
+	@Benchmark
+	public int tokenizeReader() {
+		return count(new CssLexer(new StringReader(source), syntax));
+	}
+
+	@Benchmark
+	public int advance() {
+		CssLexer lexer = new CssLexer(source, syntax);
+		int count = 0;
+		for (CssTokenType type = lexer.advance(); type != CssTokenType.END && type != CssTokenType.ERROR; type = lexer.advance()) {
+			count++;
+		}
+		return count;
+	}
+
+	@Benchmark
+	public CssTokenBuffer tokenizeBuffer() {
+		return new CssLexer(source, syntax).toBuffer();
+	}
+
+	private static int count(CssLexer lexer) {
+		int count = 0;
+		while (lexer.hasNext()) {
+			lexer.next();
+			count++;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,65 @@
+package org.duelengine.css.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.duelengine.css.ast.StyleSheetNode;
+import org.duelengine.css.parsing.CssLexer;
+import org.duelengine.css.parsing.CssParser;
+import org.duelengine.css.parsing.CssParser.Syntax;
+import org.duelengine.css.parsing.CssToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CssParser throughput, both in isolation over pre-lexed tokens and end-to-end from source
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class ParserBenchmark {
+
+	@Param({ "small", "medium", "huge" })
+	public String size;
+
+	@Param({ "CSS", "LESS" })
+	public Syntax syntax;
+
+	private String source;
+	private List<CssToken> tokens;
+
+	@Setup
+	public void setup() throws IOException {
+		source = Corpus.load(size, syntax);
+
+		tokens = new ArrayList<CssToken>();
+		CssLexer lexer = new CssLexer(source, syntax);
+		while (lexer.hasNext()) {
+			tokens.add(lexer.next());
+		}
+	}
+
+	@Benchmark
+	public StyleSheetNode parse() throws IOException {
+		return new CssParser(syntax).parse(tokens);
+	}
+
+	@Benchmark
+	public StyleSheetNode lexAndParse() throws IOException {
+		return new CssParser(syntax).parse(new CssLexer(source, syntax));
+	}
+}
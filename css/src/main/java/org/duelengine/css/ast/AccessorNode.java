@@ -14,4 +14,9 @@ public class AccessorNode extends ContainerValueNode {
 	public CssNodeType getNodeType() {
 		return CssNodeType.ACCESSOR;
 	}
+
+	@Override
+	public <R, C> R accept(CssVisitor<R, C> visitor, C context) {
+		return visitor.visitAccessor(this, context);
+	}
 }
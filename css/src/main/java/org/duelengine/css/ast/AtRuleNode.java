@@ -34,6 +34,11 @@ public class AtRuleNode extends ContainerNode {
 		return CssNodeType.AT_RULE;
 	}
 
+	@Override
+	public <R, C> R accept(CssVisitor<R, C> visitor, C context) {
+		return visitor.visitAtRule(this, context);
+	}
+
 	public String getKeyword() {
 		return keyword;
 	}
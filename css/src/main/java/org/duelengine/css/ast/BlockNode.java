@@ -17,4 +17,9 @@ public class BlockNode extends ContainerNode {
 	public CssNodeType getNodeType() {
 		return CssNodeType.BLOCK;
 	}
+
+	@Override
+	public <R, C> R accept(CssVisitor<R, C> visitor, C context) {
+		return visitor.visitBlock(this, context);
+	}
 }
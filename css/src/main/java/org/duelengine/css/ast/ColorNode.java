@@ -38,6 +38,11 @@ public class ColorNode extends ValueNode {
 		return CssNodeType.COLOR;
 	}
 
+	@Override
+	public <R, C> R accept(CssVisitor<R, C> visitor, C context) {
+		return visitor.visitColor(this, context);
+	}
+
 	public int getRedChannel() {
 		return red;
 	}
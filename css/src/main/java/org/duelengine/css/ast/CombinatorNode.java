@@ -26,6 +26,15 @@ public class CombinatorNode extends ValueNode {
 		return CssNodeType.COMBINATOR;
 	}
 
+	@Override
+	public <R, C> R accept(CssVisitor<R, C> visitor, C context) {
+		return visitor.visitCombinator(this, context);
+	}
+
+	public CombinatorType getCombinator() {
+		return combinator;
+	}
+
 	public void setCombinator(CombinatorType combinatorType) {
 		combinator = combinatorType;
 		super.setValue(mapCombinator(combinatorType, -1, -1, -1));
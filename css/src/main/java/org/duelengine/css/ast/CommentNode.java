@@ -22,4 +22,9 @@ public class CommentNode extends ValueNode {
 	public CssNodeType getNodeType() {
 		return CssNodeType.COMMENT;
 	}
+
+	@Override
+	public <R, C> R accept(CssVisitor<R, C> visitor, C context) {
+		return visitor.visitComment(this, context);
+	}
 }
@@ -1,13 +1,163 @@
 package org.duelengine.css.ast;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.ConcurrentModificationException;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
 
 public class ContainerNode extends CssNode {
-	private final List<CssNode> children = new ArrayList<CssNode>();
+
+	/**
+	 * Live view of the children, every view shares the container's modification count
+	 */
+	private class ChildList extends AbstractList<CssNode> implements RandomAccess {
+		@Override
+		public CssNode get(int index) {
+			return getAt(index);
+		}
+
+		@Override
+		public CssNode set(int index, CssNode child) {
+			return setAt(index, child);
+		}
+
+		@Override
+		public void add(int index, CssNode child) {
+			insertAt(index, child);
+		}
+
+		@Override
+		public CssNode remove(int index) {
+			return removeAt(index);
+		}
+
+		@Override
+		public void clear() {
+			children = null;
+			size = 0;
+			modifications++;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public Iterator<CssNode> iterator() {
+			return new ChildIterator(0);
+		}
+
+		@Override
+		public ListIterator<CssNode> listIterator(int index) {
+			return new ChildIterator(index);
+		}
+	}
+
+	/**
+	 * Fails fast when the container is modified other than through this iterator,
+	 * whether directly or through any other view
+	 */
+	private class ChildIterator implements ListIterator<CssNode> {
+		private int next;
+		private int last = -1;
+		private int expected = modifications;
+
+		ChildIterator(int index) {
+			if (index < 0 || index > size) {
+				throw new IndexOutOfBoundsException("index: "+index+", size: "+size);
+			}
+			next = index;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < size;
+		}
+
+		@Override
+		public CssNode next() {
+			checkModifications();
+			if (next >= size) {
+				throw new NoSuchElementException();
+			}
+			last = next++;
+			return getAt(last);
+		}
+
+		@Override
+		public boolean hasPrevious() {
+			return next > 0;
+		}
+
+		@Override
+		public CssNode previous() {
+			checkModifications();
+			if (next <= 0) {
+				throw new NoSuchElementException();
+			}
+			last = --next;
+			return getAt(last);
+		}
+
+		@Override
+		public int nextIndex() {
+			return next;
+		}
+
+		@Override
+		public int previousIndex() {
+			return next-1;
+		}
+
+		@Override
+		public void remove() {
+			if (last < 0) {
+				throw new IllegalStateException();
+			}
+			checkModifications();
+			removeAt(last);
+			next = last;
+			last = -1;
+			expected = modifications;
+		}
+
+		@Override
+		public void set(CssNode child) {
+			if (last < 0) {
+				throw new IllegalStateException();
+			}
+			checkModifications();
+			setAt(last, child);
+		}
+
+		@Override
+		public void add(CssNode child) {
+			checkModifications();
+			insertAt(next++, child);
+			last = -1;
+			expected = modifications;
+		}
+
+		private void checkModifications() {
+			if (expected != modifications) {
+				throw new ConcurrentModificationException();
+			}
+		}
+	}
+
+	// null when empty, the child itself when single, otherwise an array grown on demand
+	private Object children;
+	private int size;
+	// structural changes made by any means, checked by iterators
+	private int modifications;
 	private Map<String, LessVariableDeclarationNode> variables;
 
 	public ContainerNode(int index, int line, int column) {
@@ -26,25 +176,94 @@ public class ContainerNode extends CssNode {
 	public CssNodeType getNodeType() {
 		return CssNodeType.CONTAINER;
 	}
+
+	@Override
+	public <R, C> R accept(CssVisitor<R, C> visitor, C context) {
+		return visitor.visitContainer(this, context);
+	}
 	
 	public boolean hasChildren() {
-		return !children.isEmpty();
+		return size > 0;
 	}
 
 	public int childCount() {
-		return children.size();
+		return size;
 	}
 
 	public List<CssNode> getChildren() {
-		return children;
+		return new ChildList();
 	}
 
 	public CssNode getFirstChild() {
-		return children.isEmpty() ? null : children.get(0);
+		return (size > 0) ? getAt(0) : null;
 	}
 
 	public CssNode getLastChild() {
-		return children.isEmpty() ? null : children.get(children.size()-1);
+		return (size > 0) ? getAt(size-1) : null;
+	}
+
+	private CssNode getAt(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index: "+index+", size: "+size);
+		}
+
+		return (size == 1) ? (CssNode)children : ((CssNode[])children)[index];
+	}
+
+	private CssNode setAt(int index, CssNode child) {
+		CssNode old = getAt(index);
+		if (size == 1) {
+			children = child;
+		} else {
+			((CssNode[])children)[index] = child;
+		}
+		return old;
+	}
+
+	private void insertAt(int index, CssNode child) {
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException("index: "+index+", size: "+size);
+		}
+
+		if (size == 0) {
+			children = child;
+
+		} else if (size == 1) {
+			CssNode[] array = new CssNode[2];
+			array[index] = child;
+			array[1-index] = (CssNode)children;
+			children = array;
+
+		} else {
+			CssNode[] array = (CssNode[])children;
+			if (size == array.length) {
+				array = Arrays.copyOf(array, size + (size >> 1));
+				children = array;
+			}
+			System.arraycopy(array, index, array, index+1, size-index);
+			array[index] = child;
+		}
+		size++;
+		modifications++;
+	}
+
+	private CssNode removeAt(int index) {
+		CssNode old = getAt(index);
+		if (size == 1) {
+			children = null;
+
+		} else {
+			CssNode[] array = (CssNode[])children;
+			System.arraycopy(array, index+1, array, index, size-index-1);
+			array[size-1] = null;
+			if (size == 2) {
+				// collapse back to a single child
+				children = array[0];
+			}
+		}
+		size--;
+		modifications++;
+		return old;
 	}
 
 	protected CssNode filterChild(CssNode child) {
@@ -59,7 +278,7 @@ public class ContainerNode extends CssNode {
 			return;
 		}
 
-		children.add(child);
+		insertAt(size, child);
 		child.setParent(this);
 	}
 
@@ -68,10 +287,10 @@ public class ContainerNode extends CssNode {
 			return false;
 		}
 
-		for (int i=0; i<children.size(); i++) {
-			CssNode child = children.get(i);
+		for (int i=0; i<size; i++) {
+			CssNode child = getAt(i);
 			if (child == oldChild) {
-				children.remove(i);
+				removeAt(i);
 				child.setParent(null);
 				return true;
 			}
@@ -92,10 +311,10 @@ public class ContainerNode extends CssNode {
 			return removeChild(oldChild);
 		}
 
-		for (int i=0; i<children.size(); i++) {
-			CssNode child = children.get(i);
+		for (int i=0; i<size; i++) {
+			CssNode child = getAt(i);
 			if (child == oldChild) {
-				children.set(i, newChild);
+				setAt(i, newChild);
 				newChild.setParent(this);
 				child.setParent(null);
 				return true;
@@ -141,13 +360,13 @@ public class ContainerNode extends CssNode {
 		}
 
 		ContainerNode that = (ContainerNode)arg;
-		if (this.children.size() != that.children.size()) {
+		if (this.size != that.size) {
 			return false;
 		}
 
-		for (int i=0; i<this.children.size(); i++) {
-			CssNode a = this.children.get(i);
-			CssNode b = that.children.get(i);
+		for (int i=0; i<this.size; i++) {
+			CssNode a = this.getAt(i);
+			CssNode b = that.getAt(i);
 			if (a == null ? b != null : !a.equals(b)) {
 				return false;
 			}
@@ -161,7 +380,8 @@ public class ContainerNode extends CssNode {
 		final int HASH_PRIME = 1000003;
 
 		int hash = 0;
-		for (CssNode child : children) {
+		for (int i=0; i<size; i++) {
+			CssNode child = getAt(i);
 			if (child == null) {
 				continue;
 			}
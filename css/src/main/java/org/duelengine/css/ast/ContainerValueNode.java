@@ -19,6 +19,11 @@ public abstract class ContainerValueNode extends ValueNode {
 	@Override
 	public abstract CssNodeType getNodeType();
 
+	@Override
+	public <R, C> R accept(CssVisitor<R, C> visitor, C context) {
+		return visitor.visitContainerValue(this, context);
+	}
+
 	public ContainerNode getContainer() {
 		return children;
 	}
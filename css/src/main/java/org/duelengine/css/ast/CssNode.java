@@ -4,33 +4,83 @@ import org.duelengine.css.codegen.CssFormatter;
 
 public abstract class CssNode {
 
-	private final int index;
-	private final int line;
-	private final int column;
+	// widths of the packed line and column fields
+	private static final int WIDTH_BITS = 5;
+	private static final int WIDTH_MASK = (1 << WIDTH_BITS) - 1;
+	private static final int HEADER_BITS = 2 * WIDTH_BITS;
+	private static final int PAYLOAD_BITS = Long.SIZE - HEADER_BITS;
+	private static final int MAX_WIDTH = Integer.SIZE - 1;
+
+	// index, line and column packed into a single field
+	private final long position;
 	private ContainerNode parent;
 
 	protected CssNode() {
-		index = line = column = -1;
+		position = 0L;
 	}
 
 	protected CssNode(int nodeIndex, int nodeLine, int nodeColumn) {
-		index = nodeIndex;
-		line = nodeLine;
-		column = nodeColumn;
+		position = pack(nodeIndex, nodeLine, nodeColumn);
+	}
+
+	/**
+	 * Packs the position into variable width fields stored as value+1, so that
+	 * unknown positions (-1) take no bits. Line and column need few bits together:
+	 * minified sources have long lines but few of them. The index is always exact.
+	 * All three are exact while their fields total at most 54 bits, which holds for
+	 * any index below 2^18-2 (256KB) since neither line nor column may exceed it.
+	 * Beyond that a column which no longer fits is recorded as unknown, then the line.
+	 */
+	static long pack(int index, int line, int column) {
+		long i = Math.max(index, -1) + 1L;
+		long l = Math.max(line, -1) + 1L;
+		long c = Math.max(column, -1) + 1L;
+
+		int available = PAYLOAD_BITS - width(i);
+		int lineWidth = width(l);
+		if (lineWidth > Math.min(MAX_WIDTH, available)) {
+			l = 0L;
+			lineWidth = 0;
+		}
+		int columnWidth = width(c);
+		if (columnWidth > Math.min(MAX_WIDTH, available - lineWidth)) {
+			c = 0L;
+			columnWidth = 0;
+		}
+
+		return (((i << lineWidth | l) << columnWidth | c) << HEADER_BITS) | (lineWidth << WIDTH_BITS) | columnWidth;
+	}
+
+	private static int width(long value) {
+		return Long.SIZE - Long.numberOfLeadingZeros(value);
 	}
 
 	public abstract CssNodeType getNodeType();
+
+	/**
+	 * Dispatches to the visitor method for the concrete node type
+	 * @param visitor
+	 * @param context
+	 * @return
+	 */
+	public <R, C> R accept(CssVisitor<R, C> visitor, C context) {
+		return visitor.visitNode(this, context);
+	}
 	
 	public int getIndex() {
-		return index;
+		int shift = HEADER_BITS + ((int)position & WIDTH_MASK) + ((int)(position >>> WIDTH_BITS) & WIDTH_MASK);
+		return (int)(position >>> shift) - 1;
 	}
 
 	public int getLine() {
-		return line;
+		int columnWidth = (int)position & WIDTH_MASK;
+		int lineWidth = (int)(position >>> WIDTH_BITS) & WIDTH_MASK;
+		return (int)((position >>> (HEADER_BITS + columnWidth)) & ((1L << lineWidth) - 1L)) - 1;
 	}
 
 	public int getColumn() {
-		return column;
+		int columnWidth = (int)position & WIDTH_MASK;
+		return (int)((position >>> HEADER_BITS) & ((1L << columnWidth) - 1L)) - 1;
 	}
 
 	public WordBreak getWordBreak(boolean prettyPrint) {
@@ -0,0 +1,96 @@
+package org.duelengine.css.ast;
+
+/**
+ * Visits nodes by their concrete type via CssNode.accept.
+ * Each method defaults to the method for its base type so implementations
+ * need only override the node types they care about.
+ * @param <R> result type
+ * @param <C> context type
+ */
+public interface CssVisitor<R, C> {
+
+	/**
+	 * Fallback for all nodes not otherwise handled
+	 */
+	R visitNode(CssNode node, C context);
+
+	default R visitContainer(ContainerNode node, C context) {
+		return visitNode(node, context);
+	}
+
+	default R visitStyleSheet(StyleSheetNode node, C context) {
+		return visitContainer(node, context);
+	}
+
+	default R visitAtRule(AtRuleNode node, C context) {
+		return visitContainer(node, context);
+	}
+
+	default R visitBlock(BlockNode node, C context) {
+		return visitContainer(node, context);
+	}
+
+	default R visitRuleSet(RuleSetNode node, C context) {
+		return visitBlock(node, context);
+	}
+
+	default R visitSelector(SelectorNode node, C context) {
+		return visitContainer(node, context);
+	}
+
+	default R visitDeclaration(DeclarationNode node, C context) {
+		return visitContainer(node, context);
+	}
+
+	default R visitLessVariableDeclaration(LessVariableDeclarationNode node, C context) {
+		return visitDeclaration(node, context);
+	}
+
+	default R visitValue(ValueNode node, C context) {
+		return visitNode(node, context);
+	}
+
+	default R visitColor(ColorNode node, C context) {
+		return visitValue(node, context);
+	}
+
+	default R visitCombinator(CombinatorNode node, C context) {
+		return visitValue(node, context);
+	}
+
+	default R visitComment(CommentNode node, C context) {
+		return visitValue(node, context);
+	}
+
+	default R visitLessVariableReference(LessVariableReferenceNode node, C context) {
+		return visitValue(node, context);
+	}
+
+	default R visitNumeric(NumericNode node, C context) {
+		return visitValue(node, context);
+	}
+
+	default R visitOperator(OperatorNode node, C context) {
+		return visitValue(node, context);
+	}
+
+	default R visitString(StringNode node, C context) {
+		return visitValue(node, context);
+	}
+
+	default R visitContainerValue(ContainerValueNode node, C context) {
+		return visitValue(node, context);
+	}
+
+	default R visitAccessor(AccessorNode node, C context) {
+		return visitContainerValue(node, context);
+	}
+
+	default R visitFunction(FunctionNode node, C context) {
+		return visitContainerValue(node, context);
+	}
+
+	default R visitMultiValue(MultiValueNode node, C context) {
+		return visitContainerValue(node, context);
+	}
+}
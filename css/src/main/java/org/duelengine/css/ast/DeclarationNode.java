@@ -27,6 +27,11 @@ public class DeclarationNode extends ContainerNode {
 		return CssNodeType.DECLARATION;
 	}
 
+	@Override
+	public <R, C> R accept(CssVisitor<R, C> visitor, C context) {
+		return visitor.visitDeclaration(this, context);
+	}
+
 	public final void setIdent(String value) {
 		ident = value;
 	}
@@ -17,4 +17,9 @@ public class FunctionNode extends ContainerValueNode {
 	public CssNodeType getNodeType() {
 		return CssNodeType.FUNCTION;
 	}
+
+	@Override
+	public <R, C> R accept(CssVisitor<R, C> visitor, C context) {
+		return visitor.visitFunction(this, context);
+	}
 }
@@ -5,6 +5,8 @@ package org.duelengine.css.ast;
  */
 public class LessVariableDeclarationNode extends DeclarationNode {
 
+	private boolean deferred;
+
 	public LessVariableDeclarationNode(String ident, int index, int line, int column) {
 		super(ident, index, line, column);
 	}
@@ -18,6 +20,22 @@ public class LessVariableDeclarationNode extends DeclarationNode {
 		return CssNodeType.LESS_VARIABLE_DECLARATION;
 	}
 
+	@Override
+	public <R, C> R accept(CssVisitor<R, C> visitor, C context) {
+		return visitor.visitLessVariableDeclaration(this, context);
+	}
+
+	/**
+	 * Determines if the declaration is retained in the tree until a template is rendered
+	 */
+	public boolean isDeferred() {
+		return deferred;
+	}
+
+	public void setDeferred(boolean value) {
+		deferred = value;
+	}
+
 	public ValueNode getValue() {
 		int length = childCount();
 
@@ -45,7 +63,7 @@ public class LessVariableDeclarationNode extends DeclarationNode {
 		setParent(context);
 		context.putVariable(this);
 
-		// nothing emitted in output
-		return null;
+		// nothing emitted in output, templates keep declaration in place
+		return deferred ? this : null;
 	}
 }
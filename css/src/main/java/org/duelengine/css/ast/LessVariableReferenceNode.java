@@ -5,6 +5,8 @@ package org.duelengine.css.ast;
  */
 public class LessVariableReferenceNode extends ValueNode {
 
+	private boolean deferred;
+
 	public LessVariableReferenceNode(String varRef, int index, int line, int column) {
 		super(varRef, index, line, column);
 	}
@@ -18,8 +20,29 @@ public class LessVariableReferenceNode extends ValueNode {
 		return CssNodeType.LESS_VARIABLE_REFERENCE;
 	}
 
+	@Override
+	public <R, C> R accept(CssVisitor<R, C> visitor, C context) {
+		return visitor.visitLessVariableReference(this, context);
+	}
+
+	/**
+	 * Determines if resolution is left until a template is rendered
+	 */
+	public boolean isDeferred() {
+		return deferred;
+	}
+
+	public void setDeferred(boolean value) {
+		deferred = value;
+	}
+
 	@Override
 	public CssNode eval(ContainerNode context) {
+		if (deferred) {
+			// remains in template
+			return this;
+		}
+
 		String varRef = getValue();
 		if (varRef == null || varRef.isEmpty()) {
 			throw new NullPointerException("varRef");
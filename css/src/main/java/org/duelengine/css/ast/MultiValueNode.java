@@ -15,6 +15,11 @@ public class MultiValueNode extends ContainerValueNode {
 		return CssNodeType.MULTI_VALUE;
 	}
 
+	@Override
+	public <R, C> R accept(CssVisitor<R, C> visitor, C context) {
+		return visitor.visitMultiValue(this, context);
+	}
+
 	@Override
 	public String getValue() {
 		throw new IllegalStateException("Value of MultiValueNode cannot be accessed directly as a String.");
@@ -40,6 +40,11 @@ public class NumericNode extends ValueNode {
 		return CssNodeType.NUMERIC;
 	}
 
+	@Override
+	public <R, C> R accept(CssVisitor<R, C> visitor, C context) {
+		return visitor.visitNumeric(this, context);
+	}
+
 	public double getNumber() {
 		return number;
 	}
@@ -5,6 +5,10 @@ package org.duelengine.css.ast;
  */
 public class OperatorNode extends ValueNode {
 
+	// precomputed for arithmetic evaluation
+	private char operator;
+	private int precedence;
+
 	public OperatorNode(String value, int index, int line, int column) {
 		super(value, index, line, column);
 	}
@@ -18,6 +22,51 @@ public class OperatorNode extends ValueNode {
 		return CssNodeType.OPERATOR;
 	}
 
+	@Override
+	public <R, C> R accept(CssVisitor<R, C> visitor, C context) {
+		return visitor.visitOperator(this, context);
+	}
+
+	@Override
+	public void setValue(String value) {
+		super.setValue(value);
+
+		operator = (value != null && value.length() == 1) ? value.charAt(0) : '\0';
+		precedence = getPrecedence(operator);
+	}
+
+	/**
+	 * Gets the single character operator, or '\0' if not a single character
+	 */
+	public char getOperator() {
+		return operator;
+	}
+
+	/**
+	 * Gets the arithmetic precedence, or -1 if not an arithmetic operator
+	 */
+	public int getPrecedence() {
+		return precedence;
+	}
+
+	private static int getPrecedence(char operator) {
+		switch (operator) {
+			case '(':
+			case ')':
+				return 0;
+			case '+':
+			case '-':
+				return 1;
+			case '*':
+			case '/':
+//			case '%':
+				return 2;
+			default:
+				// unknown
+				return -1;
+		}
+	}
+
 	@Override
 	public WordBreak getWordBreak(boolean prettyPrint) {
 		String value = getValue(!prettyPrint);
@@ -40,6 +40,11 @@ public class RuleSetNode extends BlockNode {
 		return CssNodeType.RULE_SET;
 	}
 
+	@Override
+	public <R, C> R accept(CssVisitor<R, C> visitor, C context) {
+		return visitor.visitRuleSet(this, context);
+	}
+
 	public Collection<SelectorNode> getSelectors() {
 		return selectors;
 	}
@@ -26,6 +26,11 @@ public class SelectorNode extends ContainerNode {
 		return CssNodeType.SELECTOR;
 	}
 
+	@Override
+	public <R, C> R accept(CssVisitor<R, C> visitor, C context) {
+		return visitor.visitSelector(this, context);
+	}
+
 	@Override
 	protected CssNode filterChild(CssNode child) {
 		child = super.filterChild(child);
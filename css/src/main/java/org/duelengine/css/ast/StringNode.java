@@ -17,4 +17,9 @@ public class StringNode extends ValueNode {
 	public CssNodeType getNodeType() {
 		return CssNodeType.STRING;
 	}
+
+	@Override
+	public <R, C> R accept(CssVisitor<R, C> visitor, C context) {
+		return visitor.visitString(this, context);
+	}
 }
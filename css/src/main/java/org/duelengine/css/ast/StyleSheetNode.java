@@ -20,6 +20,11 @@ public class StyleSheetNode extends ContainerNode {
 		return CssNodeType.STYLESHEET;
 	}
 
+	@Override
+	public <R, C> R accept(CssVisitor<R, C> visitor, C context) {
+		return visitor.visitStyleSheet(this, context);
+	}
+
 	@Override
 	protected CssNode filterChild(CssNode child) {
 		child = super.filterChild(child);
@@ -28,6 +33,11 @@ public class StyleSheetNode extends ContainerNode {
 			return child;
 		}
 
+		if (child instanceof LessVariableDeclarationNode) {
+			// deferred variables are retained by templates
+			return child;
+		}
+
 		throw new InvalidNodeException("StyleSheets may only directly hold at-rules, rule-sets and comments", child);
 	}
 }
@@ -22,6 +22,11 @@ public class ValueNode extends CssNode {
 		return CssNodeType.VALUE;
 	}
 
+	@Override
+	public <R, C> R accept(CssVisitor<R, C> visitor, C context) {
+		return visitor.visitValue(this, context);
+	}
+
 	public void setValue(String value) {
 		nodeValue = value;
 	}
@@ -2,7 +2,6 @@ package org.duelengine.css.codegen;
 
 import java.util.Arrays;
 import java.util.Iterator;
-import java.util.Stack;
 
 import org.duelengine.css.ast.ContainerNode;
 import org.duelengine.css.ast.CssNode;
@@ -13,10 +12,18 @@ import org.duelengine.css.parsing.InvalidNodeException;
 
 /**
  * Implements single-pass variant of Dijkstra's shunting-yard algorithm.
- * Inherently thread-safe as contains no mutable instance data.
+ * Instances reuse their stacks between expressions so are not thread-safe,
+ * the static eval methods are inherently thread-safe.
  */
 public final class ArithmeticEvaluator {
 
+	private static final int INITIAL_CAPACITY = 8;
+
+	private OperatorNode[] operators = new OperatorNode[INITIAL_CAPACITY];
+	private int operatorCount;
+	private ValueNode[] operands = new ValueNode[INITIAL_CAPACITY];
+	private int operandCount;
+
 	/**
 	 * Evaluates sequences of values and operators as arithmetic expressions
 	 */
@@ -30,36 +37,46 @@ public final class ArithmeticEvaluator {
 	 * @return
 	 */
 	public static ValueNode eval(Iterable<CssNode> expr) {
+		return new ArithmeticEvaluator().evaluate(expr);
+	}
+
+	/**
+	 * Evaluates sequences of values and operators as arithmetic expressions
+	 * reusing this instance's stacks
+	 * @param expr
+	 * @return
+	 */
+	public ValueNode evaluate(Iterable<CssNode> expr) {
+		operatorCount = 0;
+		operandCount = 0;
+
 		try {
-			Stack<OperatorNode> operators = new Stack<OperatorNode>();
-			Stack<ValueNode> operands = new Stack<ValueNode>();
-	
 			boolean lastWasVar = false;
 			for (CssNode next : expr) {
 				if (next instanceof OperatorNode) {
-					int nextPrecedence = precedence((OperatorNode)next);
-					if (nextPrecedence < 0) {
+					OperatorNode op = (OperatorNode)next;
+					if (op.getPrecedence() < 0) {
 						// unknown operator signals start of new expression
-						flushOperators(operators, operands);
+						flushOperators();
 						// operator is treated as a delimiter
-						operands.add((ValueNode)next);
+						pushOperand(op);
 	
 					} else {
-						if (lastWasVar && "(".equals(((OperatorNode)next).getValue())) {
+						if (lastWasVar && op.getOperator() == '(') {
 							// var/parens boundary signals start of new expression
-							flushOperators(operators, operands);
+							flushOperators();
 						}
 	
-						processOp(operators, operands, (OperatorNode)next);
+						processOp(op);
 					}
 					lastWasVar = false;
 	
 				} else if (next instanceof ValueNode) {
 					if (lastWasVar) {
 						// two values without an infix operator signals start of new expression
-						flushOperators(operators, operands);
+						flushOperators();
 					}
-					operands.push((ValueNode)next);
+					pushOperand((ValueNode)next);
 					lastWasVar = true;
 	
 				} else {
@@ -67,20 +84,19 @@ public final class ArithmeticEvaluator {
 				}
 			}
 
-			flushOperators(operators, operands);
+			flushOperators();
 	
-			int length = operands.size();
-			switch (length) {
+			switch (operandCount) {
 				case 0:
 					return null;
 				case 1:
-					return operands.pop();
+					return operands[0];
 				default:
-					ValueNode first = operands.get(0);
+					ValueNode first = operands[0];
 					MultiValueNode multi = new MultiValueNode(first.getIndex(), first.getLine(), first.getColumn());
 					ContainerNode container = multi.getContainer();
-					for (int i=0; i<length; i++) {
-						container.appendChild(operands.get(i));
+					for (int i=0; i<operandCount; i++) {
+						container.appendChild(operands[i]);
 					}
 					return multi;
 			}
@@ -92,97 +108,98 @@ public final class ArithmeticEvaluator {
 			Iterator<CssNode> iterator = expr.iterator();
 			CssNode node = iterator.hasNext() ? iterator.next() : null;
 			throw new InvalidNodeException(ex.getMessage(), node, ex);
+
+		} finally {
+			// release references to nodes
+			Arrays.fill(operators, null);
+			Arrays.fill(operands, null);
 		}
 	}
 
-	private static void flushOperators(Stack<OperatorNode> operators, Stack<ValueNode> operands) {
+	private void flushOperators() {
 		// evaluate operators on stack
-		while (!operators.isEmpty()) {
-			ValueNode result = evalOp(operators.pop(), operands);
+		while (operatorCount > 0) {
+			ValueNode result = evalOp(operators[--operatorCount]);
 			if (result != null) {
-				operands.push(result);
+				pushOperand(result);
 			}
 		}
 	}
 
-	private static void processOp(Stack<OperatorNode> operators, Stack<ValueNode> operands, OperatorNode next) {
+	private void processOp(OperatorNode next) {
 		while (true) {
-			if (operators.isEmpty() || "(".equals(next.getValue()) ||
-				precedence(next) > precedence(operators.peek())) {
+			if (operatorCount == 0 || next.getOperator() == '(' ||
+				next.getPrecedence() > operators[operatorCount-1].getPrecedence()) {
 				// push operator for later evaluation
-				operators.push(next);
+				pushOperator(next);
 				return;
 			}
 
-			OperatorNode op = operators.pop();
-			if ("(".equals(op.getValue()) && ")".equals(next.getValue())) {
+			OperatorNode op = operators[--operatorCount];
+			if (op.getOperator() == '(' && next.getOperator() == ')') {
 				// consume matching parens
 				return;
 			}
 
 			// eval top operator, push result on operand stack
-			ValueNode result = evalOp(op, operands);
+			ValueNode result = evalOp(op);
 			if (result != null) {
-				operands.push(result);
+				pushOperand(result);
 			}
 		}
 	}
 
-	private static ValueNode evalOp(OperatorNode op, Stack<ValueNode> operands) {
-		String operator = op.getValue();
-		if (operator != null && operator.length() == 1) {
-			char opCh = operator.charAt(0);
-			switch (opCh) {
-				case '(':
-//				case ')':
-					// consume
-					return null;
-
-				case '+':
-				case '-':
-				case '*':
-				case '/':
-					// pop order is very important
-					ValueNode right = operands.pop();
-					ValueNode left = operands.pop();
-
-					switch (opCh) {
-						case '+':
-							return left.add(right);
-						case '-':
-							return left.subtract(right);
-						case '*':
-							return left.multiply(right);
-						case '/':
-							return left.divide(right);
-					}
-					break;
-			}
+	private ValueNode evalOp(OperatorNode op) {
+		char opCh = op.getOperator();
+		switch (opCh) {
+			case '(':
+//			case ')':
+				// consume
+				return null;
+
+			case '+':
+			case '-':
+			case '*':
+			case '/':
+				// pop order is very important
+				ValueNode right = popOperand();
+				ValueNode left = popOperand();
+
+				switch (opCh) {
+					case '+':
+						return left.add(right);
+					case '-':
+						return left.subtract(right);
+					case '*':
+						return left.multiply(right);
+					case '/':
+						return left.divide(right);
+				}
+				break;
 		}
 
 		// pass unknown operators through
 		return op;
 	}
 
-	private static int precedence(OperatorNode node) {
-		String operator = node.getValue();
-
-		if (operator != null && operator.length() == 1) {
-			switch (operator.charAt(0)) {
-				case '(':
-				case ')':
-					return 0;
-				case '+':
-				case '-':
-					return 1;
-				case '*':
-				case '/':
-//				case '%':
-					return 2;
-			}
+	private void pushOperator(OperatorNode op) {
+		if (operatorCount == operators.length) {
+			operators = Arrays.copyOf(operators, operatorCount * 2);
 		}
+		operators[operatorCount++] = op;
+	}
 
-		// unknown
-		return -1;
+	private void pushOperand(ValueNode operand) {
+		if (operandCount == operands.length) {
+			operands = Arrays.copyOf(operands, operandCount * 2);
+		}
+		operands[operandCount++] = operand;
+	}
+
+	private ValueNode popOperand() {
+		if (operandCount == 0) {
+			throw new IllegalStateException("Missing operand");
+		}
+		return operands[--operandCount];
 	}
 }
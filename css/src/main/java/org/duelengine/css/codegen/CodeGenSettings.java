@@ -1,11 +1,17 @@
 package org.duelengine.css.codegen;
 
+import org.duelengine.css.optimizer.CssOptimizer;
+
 /**
  * Settings which affect generated code
  */
 public class CodeGenSettings {
 
 	private boolean inlineBraces;
+	private boolean sourceMap;
+	private boolean gzip;
+	private boolean optimizations;
+	private CssOptimizer pruner;
 	private String indent;
 	private String newline;
 
@@ -70,4 +76,68 @@ public class CodeGenSettings {
 	public void setInlineBraces(boolean value) {
 		inlineBraces = value;
 	}
+
+	/**
+	 * Gets if a source map should be generated alongside the output
+	 * @return
+	 */
+	public boolean useSourceMap() {
+		return sourceMap;
+	}
+
+	/**
+	 * Sets if a source map should be generated alongside the output
+	 * @param value
+	 */
+	public void setSourceMap(boolean value) {
+		sourceMap = value;
+	}
+
+	/**
+	 * Gets if a gzip-compressed copy should be generated alongside the output
+	 * @return
+	 */
+	public boolean useGzip() {
+		return gzip;
+	}
+
+	/**
+	 * Sets if a gzip-compressed copy should be generated alongside the output
+	 * @param value
+	 */
+	public void setGzip(boolean value) {
+		gzip = value;
+	}
+
+	/**
+	 * Gets if structural optimizations should be applied before generating output
+	 * @return
+	 */
+	public boolean useOptimizations() {
+		return optimizations;
+	}
+
+	/**
+	 * Sets if structural optimizations should be applied before generating output
+	 * @param value
+	 */
+	public void setOptimizations(boolean value) {
+		optimizations = value;
+	}
+
+	/**
+	 * Gets the optimization which removes unused selectors, or null if none
+	 * @return
+	 */
+	public CssOptimizer getPruner() {
+		return pruner;
+	}
+
+	/**
+	 * Sets the optimization which removes unused selectors, or null if none
+	 * @param value
+	 */
+	public void setPruner(CssOptimizer value) {
+		pruner = value;
+	}
 }
@@ -35,6 +35,14 @@ public class CssFormatter {
 		prettyPrint = (!settings.getIndent().isEmpty() || !settings.getNewline().isEmpty());
 	}
 
+	CodeGenSettings getSettings() {
+		return settings;
+	}
+
+	boolean isPrettyPrint() {
+		return prettyPrint;
+	}
+
 	public static String getFileExtension() {
 		return ".css";
 	}
@@ -60,6 +68,20 @@ public class CssFormatter {
 	public void write(Appendable output, StyleSheetNode stylesheet, CssFilter filter)
 		throws IOException {
 
+		write(output, stylesheet, filter, null);
+	}
+
+	/**
+	 * Generates the text for the stylesheet, mapping positions to the current source
+	 * @param output
+	 * @param stylesheet
+	 * @param filter
+	 * @param sourceMap optional source map which receives mappings
+	 * @throws IOException
+	 */
+	public void write(Appendable output, StyleSheetNode stylesheet, CssFilter filter, SourceMap sourceMap)
+		throws IOException {
+
 		if (output == null) {
 			throw new NullPointerException("output");
 		}
@@ -67,6 +89,10 @@ public class CssFormatter {
 			throw new NullPointerException("stylesheet");
 		}
 
+		if (sourceMap != null) {
+			output = sourceMap.wrap(output);
+		}
+
 		// TODO: expose another setting for spacing?
 		int spacing = settings.useInlineBraces() ? 1 : 2; 
 		boolean needsDelim = false;
@@ -95,39 +121,23 @@ public class CssFormatter {
 		
 		if (node == null) {
 			output.append("null");
+			return;
+		}
 
-		} else if (node instanceof AtRuleNode) {
-			writeAtRule(output, (AtRuleNode)node, filter, 0);
-
-		} else if (node instanceof RuleSetNode) {
-			writeRuleSet(output, (RuleSetNode)node, filter, 0);
-
-		} else if (node instanceof DeclarationNode) {
-			writeDeclaration(output, (DeclarationNode)node, filter, 0);
-
-		} else if (node instanceof CommentNode) {
-			writeComment(output, (CommentNode)node, filter, 0);
-
-		} else if (node instanceof FunctionNode) {
-			writeFunction(output, (FunctionNode)node, filter, 0);
-
-		} else if (node instanceof AccessorNode) {
-			writeAccessor(output, (AccessorNode)node, filter, 0);
-
-		} else if (node instanceof MultiValueNode) {
-			writeContainer(output, ((MultiValueNode)node).getContainer(), filter, 0);
-
-		} else if (node instanceof ValueNode) {
-			writeValue(output, (ValueNode)node);
+		switch (node.getNodeType()) {
+			case BLOCK:
+				writeBlock(output, (BlockNode)node, filter, 0);
+				break;
 
-		} else if (node instanceof BlockNode) {
-			writeBlock(output, (BlockNode)node, filter, 0);
+			case STYLESHEET:
+			case CONTAINER:
+			case SELECTOR:
+				writeExpression(output, (ContainerNode)node, filter, 0);
+				break;
 
-		} else if (node instanceof ContainerNode) {
-			writeExpression(output, (ContainerNode)node, filter, 0);
-			
-		} else if (node != null) {
-			throw new UnsupportedOperationException("Node not yet implemented: "+node.getClass());
+			default:
+				dispatch(output, node, filter, 0);
+				break;
 		}
 	}
 
@@ -138,38 +148,67 @@ public class CssFormatter {
 			node = filter.filter(node);
 		}
 
-		if (node instanceof AtRuleNode) {
-			writeAtRule(output, (AtRuleNode)node, filter, depth);
-
-		} else if (node instanceof RuleSetNode) {
-			writeRuleSet(output, (RuleSetNode)node, filter, depth);
-
-		} else if (node instanceof DeclarationNode) {
-			writeDeclaration(output, (DeclarationNode)node, filter, depth);
-
-		} else if (node instanceof CommentNode) {
-			writeComment(output, (CommentNode)node, filter, depth);
-
-		} else if (node instanceof FunctionNode) {
-			writeFunction(output, (FunctionNode)node, filter, depth);
-
-		} else if (node instanceof AccessorNode) {
-			writeAccessor(output, (AccessorNode)node, filter, depth);
-
-		} else if (node instanceof MultiValueNode) {
-			writeContainer(output, ((MultiValueNode)node).getContainer(), filter, depth);
+		if (node != null) {
+			dispatch(output, node, filter, depth);
+		}
+	}
 
-		} else if (node instanceof ValueNode) {
-			writeValue(output, (ValueNode)node);
+	/**
+	 * Selects the writer by node type rather than walking a chain of type checks
+	 */
+	private void dispatch(Appendable output, CssNode node, CssFilter filter, int depth)
+		throws IOException {
 
-		} else if (node != null) {
-			throw new UnsupportedOperationException("Node not yet implemented: "+node.getClass());
+		switch (node.getNodeType()) {
+			case AT_RULE:
+				writeAtRule(output, (AtRuleNode)node, filter, depth);
+				break;
+
+			case RULE_SET:
+				writeRuleSet(output, (RuleSetNode)node, filter, depth);
+				break;
+
+			case DECLARATION:
+			case LESS_VARIABLE_DECLARATION:
+				writeDeclaration(output, (DeclarationNode)node, filter, depth);
+				break;
+
+			case COMMENT:
+				writeComment(output, (CommentNode)node, filter, depth);
+				break;
+
+			case FUNCTION:
+				writeFunction(output, (FunctionNode)node, filter, depth);
+				break;
+
+			case ACCESSOR:
+				writeAccessor(output, (AccessorNode)node, filter, depth);
+				break;
+
+			case MULTI_VALUE:
+				writeContainer(output, ((MultiValueNode)node).getContainer(), filter, depth);
+				break;
+
+			case VALUE:
+			case COLOR:
+			case COMBINATOR:
+			case CONTAINER_VALUE:
+			case LESS_VARIABLE_REFERENCE:
+			case NUMERIC:
+			case OPERATOR:
+			case STRING:
+				writeValue(output, (ValueNode)node);
+				break;
+
+			default:
+				throw new UnsupportedOperationException("Node not yet implemented: "+node.getClass());
 		}
 	}
 
 	private void writeAtRule(Appendable output, AtRuleNode node, CssFilter filter, int depth)
 		throws IOException {
 
+		mark(output, node);
 		output.append('@');
 		output.append(node.getKeyword());
 
@@ -211,6 +250,7 @@ public class CssFormatter {
 			} else {
 				needsDelim = true;
 			}
+			mark(output, selector);
 			writeExpression(output, selector, filter, depth);
 		}
 
@@ -224,9 +264,10 @@ public class CssFormatter {
 		writeBlock(output, node, filter, depth);
 	}
 
-	private void writeDeclaration(Appendable output, DeclarationNode node, CssFilter filter, int depth)
+	void writeDeclaration(Appendable output, DeclarationNode node, CssFilter filter, int depth)
 		throws IOException {
 
+		mark(output, node);
 		output.append(node.getIdent());
 		output.append(':');
 		if (prettyPrint) {
@@ -242,7 +283,7 @@ public class CssFormatter {
 		output.append(';');
 	}
 
-	private void writeExpression(Appendable output, ContainerNode node, CssFilter filter, int depth)
+	void writeExpression(Appendable output, ContainerNode node, CssFilter filter, int depth)
 		throws IOException {
 
 		WordBreak prev = null;
@@ -319,7 +360,7 @@ public class CssFormatter {
 		output.append(node.getValue(!prettyPrint));
 	}
 
-	private void writeComment(Appendable output, CommentNode node, CssFilter filter, int depth)
+	void writeComment(Appendable output, CommentNode node, CssFilter filter, int depth)
 		throws IOException {
 
 		if (prettyPrint) {
@@ -327,6 +368,15 @@ public class CssFormatter {
 		}
 	}
 
+	/**
+	 * Records the source position of the node when generating a source map
+	 */
+	static void mark(Appendable output, CssNode node) {
+		if (output instanceof MappedAppendable) {
+			((MappedAppendable)output).mark(node);
+		}
+	}
+
 	private WordBreak writeWordBreak(Appendable output, WordBreak prev, CssNode child)
 		throws IOException {
 
@@ -346,13 +396,13 @@ public class CssFormatter {
 		return next;
 	}
 
-	private void writeln(Appendable output, int depth)
+	void writeln(Appendable output, int depth)
 		throws IOException {
 
 		writeln(output, depth, 1);
 	}
 	
-	private void writeln(Appendable output, int depth, int lines)
+	void writeln(Appendable output, int depth, int lines)
 		throws IOException {
 
 		String newline = settings.getNewline();
@@ -0,0 +1,216 @@
+package org.duelengine.css.codegen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.duelengine.css.ast.AtRuleNode;
+import org.duelengine.css.ast.CommentNode;
+import org.duelengine.css.ast.DeclarationNode;
+import org.duelengine.css.ast.RuleSetNode;
+import org.duelengine.css.ast.SelectorNode;
+import org.duelengine.css.parsing.CssHandler;
+
+/**
+ * Generates CSS stylesheet source directly from parse events,
+ * producing the same output as CssFormatter without building the AST.
+ * Not thread-safe, use one instance per output.
+ */
+public class CssStreamFormatter implements CssHandler {
+
+	private static class Block {
+		// rule-set header deferred until known to be non-empty
+		private List<SelectorNode> selectors;
+		private boolean hasChildren;
+	}
+
+	private final CssFormatter formatter;
+	private final Appendable output;
+	private final boolean prettyPrint;
+	private final boolean inlineBraces;
+	private final List<Block> blocks = new ArrayList<Block>();
+	private boolean needsDelim;
+
+	/**
+	 * Ctor
+	 * @param output
+	 */
+	public CssStreamFormatter(Appendable output) {
+		this(output, null);
+	}
+
+	/**
+	 * Ctor
+	 * @param output
+	 * @param codeGenSettings
+	 */
+	public CssStreamFormatter(Appendable output, CodeGenSettings codeGenSettings) {
+		this(output, codeGenSettings, null);
+	}
+
+	/**
+	 * Ctor
+	 * @param output
+	 * @param codeGenSettings
+	 * @param sourceMap optional source map which receives mappings to the current source
+	 */
+	public CssStreamFormatter(Appendable output, CodeGenSettings codeGenSettings, SourceMap sourceMap) {
+		if (output == null) {
+			throw new NullPointerException("output");
+		}
+
+		this.output = (sourceMap != null) ? sourceMap.wrap(output) : output;
+		formatter = new CssFormatter(codeGenSettings);
+		prettyPrint = formatter.isPrettyPrint();
+		inlineBraces = formatter.getSettings().useInlineBraces();
+	}
+
+	@Override
+	public void startAtRule(AtRuleNode atRule)
+		throws IOException {
+
+		int depth = startChild(true);
+
+		CssFormatter.mark(output, atRule);
+		output.append('@');
+		output.append(atRule.getKeyword());
+
+		if (atRule.hasChildren()) {
+			output.append(' ');
+			formatter.writeExpression(output, atRule, null, depth);
+		}
+
+		if (atRule.getBlock() != null) {
+			writeBlockBegin(depth);
+			blocks.add(new Block());
+		} else {
+			output.append(';');
+		}
+	}
+
+	@Override
+	public void startRuleSet(RuleSetNode ruleSet)
+		throws IOException {
+
+		startChild(true);
+
+		Block block = new Block();
+		block.selectors = new ArrayList<SelectorNode>();
+		blocks.add(block);
+	}
+
+	@Override
+	public void selector(SelectorNode selector) {
+		if (blocks.isEmpty() || blocks.get(blocks.size()-1).selectors == null) {
+			throw new IllegalStateException("Selector outside of rule-set");
+		}
+
+		blocks.get(blocks.size()-1).selectors.add(selector);
+	}
+
+	@Override
+	public void declaration(DeclarationNode declaration)
+		throws IOException {
+
+		int depth = startChild(false);
+		formatter.writeDeclaration(output, declaration, null, depth);
+	}
+
+	@Override
+	public void comment(CommentNode comment)
+		throws IOException {
+
+		int depth = startChild(false);
+		formatter.writeComment(output, comment, null, depth);
+	}
+
+	@Override
+	public void endBlock()
+		throws IOException {
+
+		if (blocks.isEmpty()) {
+			throw new IllegalStateException("Unbalanced block end");
+		}
+
+		Block block = blocks.remove(blocks.size()-1);
+		int depth = blocks.size();
+
+		if (block.selectors != null) {
+			// remove empty rule-sets in compact mode
+			if (!prettyPrint) {
+				return;
+			}
+			writeRuleSetBegin(block, depth);
+		}
+
+		formatter.writeln(output, depth);
+		output.append('}');
+	}
+
+	/**
+	 * Emits any delimiter needed before the next child
+	 * @param isStatement rule-sets and at-rules are spaced further apart within blocks
+	 * @return the depth of the child
+	 */
+	private int startChild(boolean isStatement)
+		throws IOException {
+
+		int depth = blocks.size();
+		if (depth < 1) {
+			if (needsDelim) {
+				formatter.writeln(output, 0, inlineBraces ? 1 : 2);
+			} else {
+				needsDelim = true;
+			}
+			return depth;
+		}
+
+		Block block = blocks.get(depth-1);
+		if (block.selectors != null) {
+			writeRuleSetBegin(block, depth-1);
+		}
+
+		if (!inlineBraces && block.hasChildren && isStatement) {
+			formatter.writeln(output, depth, 2);
+		} else {
+			block.hasChildren = true;
+			formatter.writeln(output, depth);
+		}
+		return depth;
+	}
+
+	private void writeRuleSetBegin(Block block, int depth)
+		throws IOException {
+
+		boolean needsComma = false;
+		for (SelectorNode selector : block.selectors) {
+			if (needsComma) {
+				output.append(',');
+				if (prettyPrint) {
+					output.append(' ');
+				}
+			} else {
+				needsComma = true;
+			}
+			CssFormatter.mark(output, selector);
+			formatter.writeExpression(output, selector, null, depth);
+		}
+
+		// header is now written
+		block.selectors = null;
+		writeBlockBegin(depth);
+	}
+
+	private void writeBlockBegin(int depth)
+		throws IOException {
+
+		if (prettyPrint) {
+			if (inlineBraces) {
+				output.append(' ');
+			} else {
+				formatter.writeln(output, depth);
+			}
+		}
+		output.append('{');
+	}
+}
@@ -0,0 +1,245 @@
+package org.duelengine.css.codegen;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.duelengine.css.ast.AccessorNode;
+import org.duelengine.css.ast.AtRuleNode;
+import org.duelengine.css.ast.BlockNode;
+import org.duelengine.css.ast.ColorNode;
+import org.duelengine.css.ast.CombinatorNode;
+import org.duelengine.css.ast.CommentNode;
+import org.duelengine.css.ast.ContainerNode;
+import org.duelengine.css.ast.ContainerValueNode;
+import org.duelengine.css.ast.CssNode;
+import org.duelengine.css.ast.DeclarationNode;
+import org.duelengine.css.ast.FunctionNode;
+import org.duelengine.css.ast.LessVariableDeclarationNode;
+import org.duelengine.css.ast.LessVariableReferenceNode;
+import org.duelengine.css.ast.MultiValueNode;
+import org.duelengine.css.ast.NumericNode;
+import org.duelengine.css.ast.OperatorNode;
+import org.duelengine.css.ast.RuleSetNode;
+import org.duelengine.css.ast.SelectorNode;
+import org.duelengine.css.ast.StringNode;
+import org.duelengine.css.ast.StyleSheetNode;
+import org.duelengine.css.ast.ValueNode;
+import org.duelengine.css.parsing.CssLexer;
+import org.duelengine.css.parsing.CssParser;
+import org.duelengine.css.parsing.CssParser.Syntax;
+import org.duelengine.css.parsing.InvalidNodeException;
+
+/**
+ * Parsed stylesheet with LESS variables and expressions left unevaluated
+ * so it may be rendered repeatedly against different variable values.
+ * Inherently thread-safe as rendering never modifies the template.
+ */
+public class LessTemplate {
+
+	private final StyleSheetNode template;
+
+	/**
+	 * Ctor
+	 * @param stylesheet unevaluated AST produced by CssParser.parseTemplate
+	 */
+	public LessTemplate(StyleSheetNode stylesheet) {
+		if (stylesheet == null) {
+			throw new NullPointerException("stylesheet");
+		}
+
+		template = stylesheet;
+	}
+
+	/**
+	 * Evaluates the template using the declared variable values
+	 * @return
+	 * @throws IOException
+	 */
+	public StyleSheetNode render()
+		throws IOException {
+
+		return render(null);
+	}
+
+	/**
+	 * Evaluates the template with root variables replaced by the given values
+	 * @param variables map of variable name (without '@') to LESS value source, may refer to preceding entries
+	 * @return
+	 * @throws IOException
+	 */
+	public StyleSheetNode render(Map<String, String> variables)
+		throws IOException {
+
+		StyleSheetNode stylesheet = new StyleSheetNode(template.getIndex(), template.getLine(), template.getColumn());
+		ArithmeticEvaluator evaluator = new ArithmeticEvaluator();
+
+		Set<String> overrides = Collections.emptySet();
+		if (variables != null && !variables.isEmpty()) {
+			overrides = variables.keySet();
+			for (Map.Entry<String, String> variable : variables.entrySet()) {
+				String source = '@'+variable.getKey()+':'+variable.getValue()+';';
+				LessTemplate value = new CssParser(Syntax.LESS).parseTemplate(new CssLexer(source, Syntax.LESS));
+				copyChildren(value.template, stylesheet, evaluator);
+			}
+		}
+
+		for (CssNode child : template.getChildren()) {
+			if (child instanceof LessVariableDeclarationNode &&
+				overrides.contains(((LessVariableDeclarationNode)child).getIdent())) {
+				// replaced by supplied value
+				continue;
+			}
+			copy(child, stylesheet, evaluator);
+		}
+
+		return stylesheet;
+	}
+
+	private static void copyChildren(ContainerNode source, ContainerNode target, ArithmeticEvaluator evaluator) {
+		for (CssNode child : source.getChildren()) {
+			copy(child, target, evaluator);
+		}
+	}
+
+	/**
+	 * Appends a fresh copy of the node to the target, evaluating it within that scope
+	 */
+	private static void copy(CssNode node, ContainerNode target, ArithmeticEvaluator evaluator) {
+		switch (node.getNodeType()) {
+			case AT_RULE:
+				AtRuleNode atRule = (AtRuleNode)node;
+				AtRuleNode atRuleCopy = new AtRuleNode(atRule.getKeyword(), node.getIndex(), node.getLine(), node.getColumn());
+				target.appendChild(atRuleCopy);
+				copyChildren(atRule, atRuleCopy, evaluator);
+
+				BlockNode block = atRule.getBlock();
+				if (block != null) {
+					BlockNode blockCopy = new BlockNode(block.getIndex(), block.getLine(), block.getColumn());
+					atRuleCopy.setBlock(blockCopy);
+					copyChildren(block, blockCopy, evaluator);
+				}
+				break;
+
+			case RULE_SET:
+				RuleSetNode ruleSet = (RuleSetNode)node;
+				RuleSetNode ruleSetCopy = new RuleSetNode(node.getIndex(), node.getLine(), node.getColumn());
+				target.appendChild(ruleSetCopy);
+				for (SelectorNode selector : ruleSet.getSelectors()) {
+					SelectorNode selectorCopy = new SelectorNode(selector.getIndex(), selector.getLine(), selector.getColumn());
+					ruleSetCopy.addSelector(selectorCopy);
+					copyChildren(selector, selectorCopy, evaluator);
+				}
+				copyChildren(ruleSet, ruleSetCopy, evaluator);
+				break;
+
+			case DECLARATION:
+			case LESS_VARIABLE_DECLARATION:
+				copyDeclaration((DeclarationNode)node, target, evaluator);
+				break;
+
+			case FUNCTION:
+				copyContainer((ContainerValueNode)node, new FunctionNode(((ValueNode)node).getValue(), node.getIndex(), node.getLine(), node.getColumn()), target, evaluator);
+				break;
+
+			case ACCESSOR:
+				copyContainer((ContainerValueNode)node, new AccessorNode(((ValueNode)node).getValue(), node.getIndex(), node.getLine(), node.getColumn()), target, evaluator);
+				break;
+
+			case MULTI_VALUE:
+				copyContainer((ContainerValueNode)node, new MultiValueNode(node.getIndex(), node.getLine(), node.getColumn()), target, evaluator);
+				break;
+
+			case LESS_VARIABLE_REFERENCE:
+				// resolved against the scope of the copy
+				target.appendChild(new LessVariableReferenceNode(((ValueNode)node).getValue(), node.getIndex(), node.getLine(), node.getColumn()));
+				break;
+
+			case NUMERIC:
+				NumericNode numericCopy = new NumericNode(((ValueNode)node).getValue(), node.getIndex(), node.getLine(), node.getColumn());
+				numericCopy.setKeepUnits(((NumericNode)node).getKeepUnits());
+				target.appendChild(numericCopy);
+				break;
+
+			case COLOR:
+				target.appendChild(new ColorNode(((ValueNode)node).getValue(), node.getIndex(), node.getLine(), node.getColumn()));
+				break;
+
+			case COMBINATOR:
+				target.appendChild(new CombinatorNode(((CombinatorNode)node).getCombinator(), node.getIndex(), node.getLine(), node.getColumn()));
+				break;
+
+			case COMMENT:
+				target.appendChild(new CommentNode(((ValueNode)node).getValue(), node.getIndex(), node.getLine(), node.getColumn()));
+				break;
+
+			case OPERATOR:
+				target.appendChild(new OperatorNode(((ValueNode)node).getValue(), node.getIndex(), node.getLine(), node.getColumn()));
+				break;
+
+			case STRING:
+				target.appendChild(new StringNode(((ValueNode)node).getValue(), node.getIndex(), node.getLine(), node.getColumn()));
+				break;
+
+			case VALUE:
+				target.appendChild(new ValueNode(((ValueNode)node).getValue(), node.getIndex(), node.getLine(), node.getColumn()));
+				break;
+
+			default:
+				throw new UnsupportedOperationException("Node not yet implemented: "+node.getClass());
+		}
+	}
+
+	private static void copyContainer(ContainerValueNode node, ContainerValueNode copy, ContainerNode target, ArithmeticEvaluator evaluator) {
+		// attach first so that args resolve variables within the correct scope
+		target.appendChild(copy);
+		copyChildren(node.getContainer(), copy.getContainer(), evaluator);
+	}
+
+	private static void copyDeclaration(DeclarationNode declaration, ContainerNode target, ArithmeticEvaluator evaluator) {
+		boolean requiredEval = (declaration instanceof LessVariableDeclarationNode);
+		boolean optionalEval = false;
+
+		DeclarationNode copy = requiredEval ?
+			new LessVariableDeclarationNode(declaration.getIdent(), declaration.getIndex(), declaration.getLine(), declaration.getColumn()) :
+			new DeclarationNode(declaration.getIdent(), declaration.getIndex(), declaration.getLine(), declaration.getColumn());
+		copy.setImportant(declaration.isImportant());
+
+		// registers any variable before its value is evaluated, same as when parsed
+		target.appendChild(copy);
+
+		for (CssNode child : declaration.getChildren()) {
+			if (child instanceof LessVariableReferenceNode) {
+				requiredEval = true;
+
+			} else if (child instanceof OperatorNode) {
+				String value = ((OperatorNode)child).getValue();
+				if (value != null && !value.isEmpty()) {
+					switch (value.charAt(0)) {
+						case '+':
+						case '-':
+						case '*':
+						case '/':
+							optionalEval = true;
+							break;
+					}
+				}
+			}
+
+			copy(child, copy, evaluator);
+		}
+
+		if (requiredEval || optionalEval) {
+			try {
+				ValueNode result = evaluator.evaluate(copy.getChildren());
+				copy.getChildren().clear();
+				copy.appendChild(result);
+
+			} catch (InvalidNodeException ex) {
+				// suppress errors when evaluation not required
+				if (requiredEval) { throw ex; }
+			}
+		}
+	}
+}
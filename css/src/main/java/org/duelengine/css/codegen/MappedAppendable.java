@@ -0,0 +1,79 @@
+package org.duelengine.css.codegen;
+
+import java.io.IOException;
+
+import org.duelengine.css.ast.CssNode;
+
+/**
+ * Tracks the generated position while writing so that
+ * nodes may be mapped back to their position in the source.
+ */
+class MappedAppendable implements Appendable {
+
+	private final Appendable output;
+	private final SourceMap sourceMap;
+
+	/**
+	 * Ctor
+	 * @param output
+	 * @param sourceMap
+	 */
+	MappedAppendable(Appendable output, SourceMap sourceMap) {
+		if (output == null) {
+			throw new NullPointerException("output");
+		}
+		if (sourceMap == null) {
+			throw new NullPointerException("sourceMap");
+		}
+
+		this.output = output;
+		this.sourceMap = sourceMap;
+	}
+
+	SourceMap getSourceMap() {
+		return sourceMap;
+	}
+
+	/**
+	 * Maps the current output position to the node's source position
+	 * @param node
+	 */
+	void mark(CssNode node) {
+		sourceMap.mark(node);
+	}
+
+	@Override
+	public Appendable append(CharSequence csq)
+		throws IOException {
+
+		if (csq == null) {
+			csq = "null";
+		}
+
+		output.append(csq);
+		sourceMap.advance(csq, 0, csq.length());
+		return this;
+	}
+
+	@Override
+	public Appendable append(CharSequence csq, int start, int end)
+		throws IOException {
+
+		if (csq == null) {
+			csq = "null";
+		}
+
+		output.append(csq, start, end);
+		sourceMap.advance(csq, start, end);
+		return this;
+	}
+
+	@Override
+	public Appendable append(char c)
+		throws IOException {
+
+		output.append(c);
+		sourceMap.advance(c);
+		return this;
+	}
+}
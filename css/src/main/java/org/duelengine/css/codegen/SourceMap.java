@@ -0,0 +1,292 @@
+package org.duelengine.css.codegen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.duelengine.css.ast.CssNode;
+
+/**
+ * Collects mappings from generated output back to the original sources
+ * and serializes them as a Source Map (revision 3).
+ * Multiple sources may contribute to one output, e.g. when imports are inlined,
+ * by selecting the current source before writing each stylesheet.
+ * The generated position carries over between writes so any text written
+ * to the output directly must go through the Appendable returned by wrap.
+ * Not thread-safe, use one instance per output.
+ */
+public class SourceMap {
+
+	/** File extension appended to the generated file name */
+	public static final String EXTENSION = ".map";
+
+	private static final String BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+	private static final int VLQ_SHIFT = 5;
+	private static final int VLQ_MASK = (1 << VLQ_SHIFT)-1;
+	private static final int VLQ_CONTINUATION = 1 << VLQ_SHIFT;
+
+	// each mapping is stored as a group of ints
+	private static final int GENERATED_LINE = 0;
+	private static final int GENERATED_COLUMN = 1;
+	private static final int SOURCE = 2;
+	private static final int LINE = 3;
+	private static final int COLUMN = 4;
+	private static final int STRIDE = 5;
+
+	private final List<String> sources = new ArrayList<String>();
+	private int source = -1;
+	private int[] mappings = new int[STRIDE*64];
+	private int size;
+	private int generatedLine;
+	private int generatedColumn;
+
+	/**
+	 * Wraps the output so that the generated position is tracked as it is written
+	 * @param output
+	 * @return
+	 */
+	public Appendable wrap(Appendable output) {
+		if (output instanceof MappedAppendable && ((MappedAppendable)output).getSourceMap() == this) {
+			return output;
+		}
+		return new MappedAppendable(output, this);
+	}
+
+	/**
+	 * Adds a source file, returning its index
+	 * @param path source path relative to the map file
+	 * @return
+	 */
+	public int addSource(String path) {
+		if (path == null) {
+			throw new NullPointerException("path");
+		}
+
+		int index = sources.indexOf(path);
+		if (index < 0) {
+			index = sources.size();
+			sources.add(path);
+		}
+		return index;
+	}
+
+	/**
+	 * Selects the source for subsequently written nodes, adding it if needed
+	 * @param path source path relative to the map file
+	 */
+	public void setSource(String path) {
+		source = addSource(path);
+	}
+
+	/**
+	 * Gets the index of the current source
+	 * @return -1 if no source has been selected
+	 */
+	public int getSource() {
+		return source;
+	}
+
+	/**
+	 * Gets the sources referenced by the mappings
+	 * @return
+	 */
+	public List<String> getSources() {
+		return sources;
+	}
+
+	/**
+	 * Gets the number of mappings
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Maps the current generated position to the node's position in the current source
+	 * @param node
+	 */
+	void mark(CssNode node) {
+		int line = node.getLine();
+		if (source < 0 || line < 0) {
+			// position unknown
+			return;
+		}
+
+		// lexer columns count the preceding newline on all but the first line
+		int column = (line > 0) ? node.getColumn()-1 : node.getColumn();
+		addMapping(generatedLine, generatedColumn, source, line, Math.max(column, 0));
+	}
+
+	/**
+	 * Advances the generated position past the written text
+	 */
+	void advance(CharSequence text, int start, int end) {
+		for (int i=start; i<end; i++) {
+			advance(text.charAt(i));
+		}
+	}
+
+	/**
+	 * Advances the generated position past the written char
+	 */
+	void advance(char ch) {
+		if (ch == '\n') {
+			generatedLine++;
+			generatedColumn = 0;
+		} else {
+			generatedColumn++;
+		}
+	}
+
+	/**
+	 * Maps a generated position to an original position, all zero-based.
+	 * Mappings must be added in generated order.
+	 * @param generatedLine
+	 * @param generatedColumn
+	 * @param sourceIndex
+	 * @param line
+	 * @param column
+	 */
+	public void addMapping(int generatedLine, int generatedColumn, int sourceIndex, int line, int column) {
+		if (sourceIndex < 0 || sourceIndex >= sources.size()) {
+			throw new IndexOutOfBoundsException("Source: "+sourceIndex+", Sources: "+sources.size());
+		}
+
+		if (size > 0) {
+			int last = (size-1)*STRIDE;
+			if (mappings[last+GENERATED_LINE] == generatedLine && mappings[last+GENERATED_COLUMN] == generatedColumn) {
+				// first node written at a position wins
+				return;
+			}
+		}
+
+		int offset = size*STRIDE;
+		if (offset == mappings.length) {
+			mappings = Arrays.copyOf(mappings, offset*2);
+		}
+
+		mappings[offset+GENERATED_LINE] = generatedLine;
+		mappings[offset+GENERATED_COLUMN] = generatedColumn;
+		mappings[offset+SOURCE] = sourceIndex;
+		mappings[offset+LINE] = line;
+		mappings[offset+COLUMN] = column;
+		size++;
+	}
+
+	/**
+	 * Generates the VLQ-encoded mappings field
+	 * @param output
+	 * @throws IOException
+	 */
+	public void writeMappings(Appendable output)
+		throws IOException {
+
+		int generatedLine = 0;
+		int generatedColumn = 0;
+		int prevSource = 0;
+		int prevLine = 0;
+		int prevColumn = 0;
+
+		for (int i=0; i<size; i++) {
+			int offset = i*STRIDE;
+
+			int line = mappings[offset+GENERATED_LINE];
+			if (line != generatedLine) {
+				while (generatedLine < line) {
+					output.append(';');
+					generatedLine++;
+				}
+				generatedColumn = 0;
+
+			} else if (i > 0) {
+				output.append(',');
+			}
+
+			// generated column is relative within a line, the rest across the whole map
+			encode(output, mappings[offset+GENERATED_COLUMN]-generatedColumn);
+			encode(output, mappings[offset+SOURCE]-prevSource);
+			encode(output, mappings[offset+LINE]-prevLine);
+			encode(output, mappings[offset+COLUMN]-prevColumn);
+
+			generatedColumn = mappings[offset+GENERATED_COLUMN];
+			prevSource = mappings[offset+SOURCE];
+			prevLine = mappings[offset+LINE];
+			prevColumn = mappings[offset+COLUMN];
+		}
+	}
+
+	/**
+	 * Generates the source map JSON
+	 * @param output
+	 * @param file name of the generated file
+	 * @throws IOException
+	 */
+	public void write(Appendable output, String file)
+		throws IOException {
+
+		output.append("{\"version\":3");
+		if (file != null) {
+			output.append(",\"file\":");
+			writeString(output, file);
+		}
+		output.append(",\"sources\":[");
+		boolean needsDelim = false;
+		for (String path : sources) {
+			if (needsDelim) {
+				output.append(',');
+			} else {
+				needsDelim = true;
+			}
+			writeString(output, path);
+		}
+		output.append("],\"names\":[],\"mappings\":\"");
+		writeMappings(output);
+		output.append("\"}");
+	}
+
+	/**
+	 * Appends a Base64 VLQ encoded value
+	 * @param output
+	 * @param value
+	 * @throws IOException
+	 */
+	static void encode(Appendable output, int value)
+		throws IOException {
+
+		// sign is stored in the least significant bit
+		int vlq = (value < 0) ? ((-value) << 1) | 1 : (value << 1);
+		do {
+			int digit = vlq & VLQ_MASK;
+			vlq >>>= VLQ_SHIFT;
+			if (vlq > 0) {
+				digit |= VLQ_CONTINUATION;
+			}
+			output.append(BASE64.charAt(digit));
+		} while (vlq > 0);
+	}
+
+	private static void writeString(Appendable output, String value)
+		throws IOException {
+
+		output.append('"');
+		for (int i=0, length=value.length(); i<length; i++) {
+			char ch = value.charAt(i);
+			switch (ch) {
+				case '"':
+				case '\\':
+					output.append('\\').append(ch);
+					break;
+				default:
+					if (ch < ' ') {
+						output.append(String.format("\\u%04x", (int)ch));
+					} else {
+						output.append(ch);
+					}
+					break;
+			}
+		}
+		output.append('"');
+	}
+}
@@ -0,0 +1,190 @@
+package org.duelengine.css.compiler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Persistent manifest of source hash + settings hash -> output hashes
+ * used to skip recompiling unchanged inputs.
+ * Safe to update concurrently.
+ */
+final class BuildCache {
+
+	// bump when compiler output changes for the same input and settings
+	private static final String FORMAT_VERSION = "1";
+	private static final String HASH_ALGORITHM = "SHA-1";
+	private static final char DELIM = ',';
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final File manifest;
+	private final String settingsHash;
+	private final boolean force;
+	private final Properties previous = new Properties();
+	private final Properties current = new Properties();
+	private final AtomicInteger skipped = new AtomicInteger();
+
+	/**
+	 * Ctor
+	 * @param manifestFile location of the persisted manifest
+	 * @param settingsFingerprint description of all settings which affect output
+	 * @param forceRebuild ignores any previous manifest entries
+	 */
+	public BuildCache(File manifestFile, String settingsFingerprint, boolean forceRebuild) {
+		manifest = manifestFile;
+		settingsHash = hash(ByteBuffer.wrap((FORMAT_VERSION+DELIM+settingsFingerprint).getBytes(CssCompiler.UTF8)));
+		force = forceRebuild;
+	}
+
+	/**
+	 * Loads the previous manifest if one exists
+	 * @throws IOException
+	 */
+	public void load() throws IOException {
+		if (force || !manifest.isFile()) {
+			return;
+		}
+
+		InputStream stream = new FileInputStream(manifest);
+		try {
+			previous.load(stream);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Persists entries recorded during this build, dropping any for sources no longer present
+	 * @throws IOException
+	 */
+	public void save() throws IOException {
+		File parent = manifest.getAbsoluteFile().getParentFile();
+		if (parent != null) {
+			parent.mkdirs();
+		}
+
+		OutputStream stream = new FileOutputStream(manifest, false);
+		try {
+			current.store(stream, "DUEL CSS build cache");
+		} finally {
+			stream.close();
+		}
+
+		// subsequent builds in the same process compare against what was just saved
+		previous.clear();
+		previous.putAll(current);
+	}
+
+	/**
+	 * Gets the number of sources skipped as unchanged
+	 */
+	public int getSkipped() {
+		return skipped.get();
+	}
+
+	/**
+	 * Determines if every output was produced from this exact source and settings,
+	 * carrying the entry forward if so
+	 * @param outputs the target followed by any generated siblings, e.g. gzip or source map
+	 * @throws IOException
+	 */
+	public boolean isCurrent(File source, String sourceHash, File... outputs) throws IOException {
+		String key = getKey(source);
+		String entry = previous.getProperty(key);
+		if (entry == null) {
+			return false;
+		}
+
+		String[] hashes = entry.split(String.valueOf(DELIM));
+		if (hashes.length != outputs.length+2 ||
+			!hashes[0].equals(sourceHash) ||
+			!hashes[1].equals(settingsHash)) {
+			return false;
+		}
+
+		for (int i=0; i<outputs.length; i++) {
+			// deleted or edited outputs are regenerated
+			if (!outputs[i].isFile() || !hashes[i+2].equals(hash(outputs[i]))) {
+				return false;
+			}
+		}
+
+		current.setProperty(key, entry);
+		skipped.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Records a successfully compiled source
+	 * @param outputHashes hashes of the outputs in the order later passed to isCurrent
+	 */
+	public void put(File source, String sourceHash, String... outputHashes) throws IOException {
+		StringBuilder entry = new StringBuilder(sourceHash).append(DELIM).append(settingsHash);
+		for (String outputHash : outputHashes) {
+			entry.append(DELIM).append(outputHash);
+		}
+		current.setProperty(getKey(source), entry.toString());
+	}
+
+	/**
+	 * Creates a digest used to produce output hashes
+	 */
+	public static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance(HASH_ALGORITHM);
+
+		} catch (NoSuchAlgorithmException ex) {
+			// required to be present in every JVM
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	/**
+	 * Hashes the remaining content of the buffer
+	 */
+	public static String hash(ByteBuffer content) {
+		MessageDigest digest = createDigest();
+		digest.update(content);
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Hashes the file contents by streaming rather than mapping,
+	 * so the file may be replaced immediately afterwards
+	 */
+	public static String hash(File file) throws IOException {
+		MessageDigest digest = createDigest();
+		InputStream stream = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[8192];
+			int count;
+			while ((count = stream.read(buffer)) >= 0) {
+				digest.update(buffer, 0, count);
+			}
+		} finally {
+			stream.close();
+		}
+		return toHex(digest.digest());
+	}
+
+	public static String toHex(byte[] bytes) {
+		char[] hex = new char[bytes.length * 2];
+		for (int i=0; i<bytes.length; i++) {
+			hex[2*i] = HEX[(bytes[i] >> 4) & 0x0F];
+			hex[2*i+1] = HEX[bytes[i] & 0x0F];
+		}
+		return new String(hex);
+	}
+
+	private static String getKey(File source) throws IOException {
+		return source.getCanonicalPath().replace('\\', '/');
+	}
+}
@@ -8,6 +8,14 @@ public class CLI {
 			"  -in <source-file|source-dir> : file path to the source file or folder (required)\n"+
 			"  -out <target-dir>            : file path to the target output directory (default: <source-dir>)\n"+
 			"  -pretty                      : pretty-prints the output\n"+
+			"  -sourcemap                   : writes a source map (.css.map) alongside each output\n"+
+			"  -gzip                        : writes a gzip-compressed copy (.css.gz) alongside each output\n"+
+			"  -optimize                    : merges rule-sets and applies other structural optimizations\n"+
+			"  -prune <inventory-file>      : removes selectors not matching the .class #id element names listed\n"+
+			"  -force                       : recompiles all files, ignoring the build cache\n"+
+			"  -threads <count>             : number of files to compile in parallel (0: all processors)\n"+
+			"  -watch                       : recompiles sources as they change until stopped\n"+
+			"  -serve <port>                : serves <source-dir> compiled on demand instead of building\n"+
 			"  -v                           : verbose output\n";
 
 	public static void main(String[] args) {
@@ -31,6 +39,30 @@ public class CLI {
 			} else if ("-pretty".equals(arg)) {
 				settings.setPrettyPrint(true);
 
+			} else if ("-sourcemap".equals(arg)) {
+				settings.setSourceMap(true);
+
+			} else if ("-gzip".equals(arg)) {
+				settings.setGzip(true);
+
+			} else if ("-optimize".equals(arg)) {
+				settings.setOptimize(true);
+
+			} else if ("-prune".equals(arg)) {
+				settings.setPruneFile(args[++i]);
+
+			} else if ("-force".equals(arg)) {
+				settings.setForce(true);
+
+			} else if ("-threads".equals(arg)) {
+				settings.setThreads(Integer.parseInt(args[++i]));
+
+			} else if ("-watch".equals(arg)) {
+				settings.setWatch(true);
+
+			} else if ("-serve".equals(arg)) {
+				settings.setServePort(Integer.parseInt(args[++i]));
+
 			} else if ("-v".equals(arg)) {
 				settings.setVerbose(true);
 
@@ -47,6 +79,12 @@ public class CLI {
 		}
 
 		try {
+			if (settings.getServePort() > 0) {
+				// server threads keep the JVM running
+				new CssCompiler().serve(settings, settings.getServePort());
+				return;
+			}
+
 			new CssCompiler().execute(settings);
 
 		} catch (Exception ex) {
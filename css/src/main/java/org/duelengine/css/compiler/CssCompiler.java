@@ -1,17 +1,48 @@
 package org.duelengine.css.compiler;
 
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.LineNumberReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
 
 import org.duelengine.css.ast.StyleSheetNode;
 import org.duelengine.css.codegen.CodeGenSettings;
 import org.duelengine.css.codegen.CssFilter;
 import org.duelengine.css.codegen.CssFormatter;
+import org.duelengine.css.codegen.CssStreamFormatter;
+import org.duelengine.css.codegen.SourceMap;
+import org.duelengine.css.optimizer.CriticalCssSplitter;
+import org.duelengine.css.optimizer.CssOptimizer;
+import org.duelengine.css.optimizer.OverriddenDeclarationRemover;
+import org.duelengine.css.optimizer.RuleSetMerger;
+import org.duelengine.css.optimizer.SelectorPruner;
+import org.duelengine.css.optimizer.ShorthandCollapser;
 import org.duelengine.css.parsing.CssLexer;
 import org.duelengine.css.parsing.CssParser;
 import org.duelengine.css.parsing.SyntaxException;
@@ -19,11 +50,27 @@ import org.duelengine.css.parsing.CssParser.Syntax;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.sun.net.httpserver.HttpServer;
+
 public class CssCompiler {
 
 	private static final Logger log = LoggerFactory.getLogger(CssCompiler.class);
-	private static final String CSS_EXT = ".css";
-	private static final String LESS_EXT = ".less";
+	static final String CSS_EXT = ".css";
+	static final String LESS_EXT = ".less";
+	static final String GZIP_EXT = ".gz";
+	static final Charset UTF8 = Charset.forName("UTF-8");
+	// large vendor stylesheets start around this size
+	static final int MAP_THRESHOLD = 256 << 10;
+	private static final char BOM = '\uFEFF';
+
+	// applied in order, each must be safe to use concurrently
+	private static final CssOptimizer[] OPTIMIZERS = {
+		new OverriddenDeclarationRemover(),
+		new ShorthandCollapser(),
+		new RuleSetMerger(),
+		// merged rule-sets may now repeat properties
+		new OverriddenDeclarationRemover()
+	};
 
 	/**
 	 * Processes CSS/LESS files
@@ -40,23 +87,186 @@ public class CssCompiler {
 			return;
 		}
 
+		CodeGenSettings formatSettings = getFormatSettings(settings);
+
+		BuildCache cache = new BuildCache(settings.getCacheFile(), settings.getFingerprint(), settings.getForce());
+		cache.load();
+
+		build(settings, inputFiles, formatSettings, cache);
+
+		if (settings.getWatch()) {
+			// keep the JVM resident and recompile sources as they change
+			new SourceWatcher(this, settings, formatSettings, cache).run();
+		}
+	}
+
+	/**
+	 * Serves CSS/LESS sources compiled on demand until the JVM exits
+	 * @param settings
+	 * @param port
+	 * @return the running server
+	 * @throws IOException 
+	 */
+	public HttpServer serve(Settings settings, int port) throws IOException {
+		if (settings == null) {
+			throw new NullPointerException("settings");
+		}
+
+		StylesheetCache cache = new StylesheetCache(this, settings.getSource(), getFormatSettings(settings), StylesheetCache.DEFAULT_CAPACITY);
+		HttpServer server = CssHttpHandler.start(new InetSocketAddress(port), cache);
+		log.info("Serving "+settings.getSource()+" on port "+server.getAddress().getPort());
+		return server;
+	}
+
+	static CodeGenSettings getFormatSettings(Settings settings) throws IOException {
 		CodeGenSettings formatSettings = new CodeGenSettings();
 		if (settings.getPrettyPrint()) {
 			formatSettings.setIndent("\t");
 			formatSettings.setNewline(System.getProperty("line.separator"));
 			formatSettings.setInlineBraces(true);
 		}
+		formatSettings.setSourceMap(settings.getSourceMap());
+		formatSettings.setGzip(settings.getGzip());
+		formatSettings.setOptimizations(settings.getOptimize());
+		if (settings.getPruneFile() != null) {
+			formatSettings.setPruner(SelectorPruner.parse(readSource(settings.getPruneFile())));
+		}
+		return formatSettings;
+	}
+
+	/**
+	 * Compiles the given files and persists the build manifest
+	 * @throws IOException 
+	 */
+	void build(Settings settings, List<File> inputFiles, CodeGenSettings formatSettings, BuildCache cache)
+		throws IOException {
+
+		int skipped = cache.getSkipped();
+		int threads = settings.getThreads();
+		Map<File, List<File>> targets = groupByTarget(settings, inputFiles);
+		if (threads > 1 && targets.size() > 1) {
+			executeParallel(settings, inputFiles, targets, formatSettings, cache, threads, !settings.getWatch());
+
+		} else {
+			for (File inputFile : inputFiles) {
+				reportSyntaxErrors(inputFile, compile(inputFile, getTargetFile(settings, inputFile), formatSettings, null, cache, !settings.getWatch()), settings.getVerbose());
+			}
+		}
 
+		cache.save();
+		if (settings.getVerbose() || settings.getWatch()) {
+			log.info(String.format("%d files, %d unchanged", inputFiles.size(), cache.getSkipped()-skipped));
+		}
+	}
+
+	/**
+	 * Determines if the file is a CSS/LESS source
+	 */
+	static boolean isSourceFile(File file) {
+		String name = file.getName().toLowerCase(Locale.ROOT);
+		return name.endsWith(CSS_EXT) || name.endsWith(LESS_EXT);
+	}
+
+	/**
+	 * Compiles files on a work-stealing pool, reporting results in input order.
+	 * Files sharing a target are compiled serially in input order within a single task,
+	 * so the last one wins as in a serial build rather than writing concurrently.
+	 * @throws IOException 
+	 */
+	private void executeParallel(Settings settings, List<File> inputFiles, Map<File, List<File>> targets, final CodeGenSettings formatSettings, final BuildCache cache, int threads, final boolean map)
+		throws IOException {
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			Map<File, Future<List<List<SyntaxException>>>> results = new HashMap<File, Future<List<List<SyntaxException>>>>();
+			for (final Map.Entry<File, List<File>> target : targets.entrySet()) {
+				results.put(target.getKey(), pool.submit(new Callable<List<List<SyntaxException>>>() {
+					public List<List<SyntaxException>> call() throws IOException {
+						List<List<SyntaxException>> errors = new ArrayList<List<SyntaxException>>(target.getValue().size());
+						for (File inputFile : target.getValue()) {
+							errors.add(compile(inputFile, target.getKey(), formatSettings, null, cache, map));
+						}
+						return errors;
+					}
+				}));
+			}
+
+			// position of each input within its target group
+			Map<File, Integer> positions = new HashMap<File, Integer>();
+			for (File inputFile : inputFiles) {
+				File target = getTargetFile(settings, inputFile).getCanonicalFile();
+				Integer position = positions.get(target);
+				position = (position != null) ? position+1 : 0;
+				positions.put(target, position);
+
+				reportSyntaxErrors(inputFile, awaitResult(results.get(target)).get(position), settings.getVerbose());
+			}
+
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Groups the inputs by target in input order, warning of any target written more than once
+	 * @throws IOException 
+	 */
+	static Map<File, List<File>> groupByTarget(Settings settings, List<File> inputFiles)
+		throws IOException {
+
+		Map<File, List<File>> targets = new LinkedHashMap<File, List<File>>();
 		for (File inputFile : inputFiles) {
-			String filename = inputFile.getName();
-			int index = filename.lastIndexOf('.');
-			if (index > 0) {
-				filename = filename.substring(0, index);
+			File target = getTargetFile(settings, inputFile).getCanonicalFile();
+			List<File> group = targets.get(target);
+			if (group == null) {
+				group = new ArrayList<File>(1);
+				targets.put(target, group);
+			}
+			group.add(inputFile);
+		}
+
+		for (Map.Entry<File, List<File>> target : targets.entrySet()) {
+			if (target.getValue().size() > 1) {
+				log.warn(String.format("%s is compiled from %d sources, the last wins: %s", target.getKey().getPath(), target.getValue().size(), target.getValue()));
+			}
+		}
+		return targets;
+	}
+
+	private static <T> T awaitResult(Future<T> result)
+		throws IOException {
+
+		try {
+			return result.get();
+
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(ex.getMessage());
+
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException)cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
 			}
-			process(inputFile, new File(settings.getTarget(), filename+CssFormatter.getFileExtension()), formatSettings, null, settings.getVerbose());
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new IOException(cause);
 		}
 	}
 
+	static File getTargetFile(Settings settings, File inputFile) {
+		String filename = inputFile.getName();
+		int index = filename.lastIndexOf('.');
+		if (index > 0) {
+			filename = filename.substring(0, index);
+		}
+		return new File(settings.getTarget(), filename+CssFormatter.getFileExtension());
+	}
+
 	/**
 	 * Processes a single CSS/LESS file
 	 * @throws IOException 
@@ -86,49 +296,361 @@ public class CssCompiler {
 	 * @throws IOException 
 	 */
 	public void process(File source, File target, CodeGenSettings settings, CssFilter filter, boolean verbose) throws IOException {
+		reportSyntaxErrors(source, compile(source, target, settings, filter, null, true), verbose);
+	}
+
+	/**
+	 * Compiles a single CSS/LESS file without reporting, safe to call concurrently
+	 * @param cache optional manifest used to skip unchanged sources
+	 * @param map allows memory-mapping large sources, see readFile
+	 * @return every syntax error found, or null if none occurred
+	 * @throws IOException 
+	 */
+	private List<SyntaxException> compile(File source, File target, CodeGenSettings settings, CssFilter filter, BuildCache cache, boolean map) throws IOException {
 		if (settings == null) {
 			settings = new CodeGenSettings();
 		}
 
-		String ext = source.getName();
-		ext = ext.substring(ext.lastIndexOf('.')+1).toLowerCase(Locale.ROOT);
-		Syntax syntax = LESS_EXT.equals(ext) ? Syntax.LESS : Syntax.CSS;
+		Syntax syntax = getSyntax(source);
 
-		StyleSheetNode stylesheet;
-		FileReader reader = null;
-		try {
-			reader = new FileReader(source);
-			stylesheet = new CssParser(syntax).parse(new CssLexer(reader, syntax));
+		ByteBuffer bytes = readFile(source, map);
+		String sourceHash = null;
+		if (cache != null) {
+			sourceHash = BuildCache.hash(bytes.duplicate());
+			if (cache.isCurrent(source, sourceHash, getOutputFiles(target, settings))) {
+				// output is already up-to-date
+				return null;
+			}
+		}
 
-		} catch (SyntaxException ex) {
-			reportSyntaxError(source, ex, verbose);
-			return;
+		// plain CSS needs no evaluation so can be written as it is parsed without holding the AST
+		boolean streaming = (syntax == Syntax.CSS) && (filter == null) && !usesAST(settings);
 
-		} finally {
-			if (reader != null) {
-				reader.close();
+		CharBuffer chars = decodeSource(bytes);
+		StyleSheetNode stylesheet = null;
+		if (!streaming) {
+			// collect every error rather than only the first
+			List<SyntaxException> errors = new ArrayList<SyntaxException>();
+			stylesheet = new CssParser(syntax).parse(new CssLexer(chars, syntax), errors);
+			if (!errors.isEmpty()) {
+				return errors;
 			}
-		}
 
-		if (stylesheet == null) {
-			log.error("Syntax error: no stylesheet found in "+source.getAbsolutePath());
-			return;
+			if (stylesheet == null) {
+				log.error("Syntax error: no stylesheet found in "+source.getAbsolutePath());
+				return null;
+			}
+
+			optimize(stylesheet, settings);
 		}
 
-		CssFormatter formatter = new CssFormatter(settings);
 		try {
 			target.getParentFile().mkdirs();
 
-			FileWriter writer = new FileWriter(target, false);
+			MessageDigest digest = (cache != null) ? BuildCache.createDigest() : null;
+			OutputStream stream = new FileOutputStream(target, false);
+			if (digest != null) {
+				stream = new DigestOutputStream(stream, digest);
+			}
+			if (settings.useGzip()) {
+				// compress in the same pass rather than re-reading the output
+				stream = new TeeOutputStream(stream, new GZIPOutputStream(new FileOutputStream(getGzipFile(target), false)));
+			}
+
+			SourceMap sourceMap = null;
+			if (settings.useSourceMap()) {
+				sourceMap = new SourceMap();
+				sourceMap.setSource(getRelativePath(target.getParentFile(), source));
+			}
+
+			Writer writer = new OutputStreamWriter(stream, UTF8);
 			try {
-				formatter.write(writer, stylesheet, filter);
+				if (streaming) {
+					new CssParser(syntax).parse(new CssLexer(chars.duplicate(), syntax), new CssStreamFormatter(writer, settings, sourceMap));
+				} else {
+					new CssFormatter(settings).write(writer, stylesheet, filter, sourceMap);
+				}
+
+				if (sourceMap != null) {
+					writer.append(settings.getNewline().isEmpty() ? "\n" : settings.getNewline()).append("/*# sourceMappingURL=").append(target.getName()).append(SourceMap.EXTENSION).append(" */");
+				}
 			} finally {
 				writer.flush();
 				writer.close();
 			}
 
+			if (sourceMap != null) {
+				writeSourceMap(sourceMap, getSourceMapFile(target), target.getName());
+			}
+
+			if (cache != null) {
+				File[] outputs = getOutputFiles(target, settings);
+				String[] outputHashes = new String[outputs.length];
+				outputHashes[0] = BuildCache.toHex(digest.digest());
+				for (int i=1; i<outputs.length; i++) {
+					// siblings are small enough to re-read
+					outputHashes[i] = BuildCache.hash(outputs[i]);
+				}
+				cache.put(source, sourceHash, outputHashes);
+			}
+
 		} catch (SyntaxException ex) {
-			reportSyntaxError(source, ex, verbose);
+			if (streaming) {
+				// do not leave partial output behind
+				for (File output : getOutputFiles(target, settings)) {
+					output.delete();
+				}
+
+				// reparse only on failure to collect every error
+				List<SyntaxException> errors = new ArrayList<SyntaxException>();
+				new CssParser(syntax).parse(new CssLexer(chars, syntax), errors);
+				if (!errors.isEmpty()) {
+					return errors;
+				}
+			}
+			return Collections.singletonList(ex);
+		}
+
+		return null;
+	}
+
+	static File getGzipFile(File target) {
+		return new File(target.getPath()+GZIP_EXT);
+	}
+
+	static File getSourceMapFile(File target) {
+		return new File(target.getPath()+SourceMap.EXTENSION);
+	}
+
+	/**
+	 * Gets the target followed by every sibling the settings generate
+	 */
+	static File[] getOutputFiles(File target, CodeGenSettings settings) {
+		List<File> outputs = new ArrayList<File>(3);
+		outputs.add(target);
+		if (settings.useGzip()) {
+			outputs.add(getGzipFile(target));
+		}
+		if (settings.useSourceMap()) {
+			outputs.add(getSourceMapFile(target));
+		}
+		return outputs.toArray(new File[outputs.size()]);
+	}
+
+	/**
+	 * Compiles a single CSS/LESS file into the output, safe to call concurrently
+	 * @param source
+	 * @param output
+	 * @param settings
+	 * @throws IOException
+	 * @throws SyntaxException 
+	 */
+	public void compile(File source, Appendable output, CodeGenSettings settings) throws IOException {
+		if (settings == null) {
+			settings = new CodeGenSettings();
+		}
+
+		Syntax syntax = getSyntax(source);
+		CharBuffer chars = readSource(source);
+
+		if (syntax == Syntax.CSS && !usesAST(settings)) {
+			new CssParser(syntax).parse(new CssLexer(chars, syntax), new CssStreamFormatter(output, settings));
+			return;
+		}
+
+		StyleSheetNode stylesheet = new CssParser(syntax).parse(new CssLexer(chars, syntax));
+		if (stylesheet != null) {
+			optimize(stylesheet, settings);
+			new CssFormatter(settings).write(output, stylesheet);
+		}
+	}
+
+	/**
+	 * Compiles a single CSS/LESS file split into the critical subset and deferred remainder,
+	 * safe to call concurrently
+	 * @param source
+	 * @param splitter
+	 * @param critical output for the rules needed by the above-the-fold elements
+	 * @param deferred output for the remaining rules
+	 * @param settings
+	 * @throws IOException
+	 * @throws SyntaxException 
+	 */
+	public void compile(File source, CriticalCssSplitter splitter, Appendable critical, Appendable deferred, CodeGenSettings settings) throws IOException {
+		if (splitter == null) {
+			throw new NullPointerException("splitter");
+		}
+		if (settings == null) {
+			settings = new CodeGenSettings();
+		}
+
+		Syntax syntax = getSyntax(source);
+		StyleSheetNode stylesheet = new CssParser(syntax).parse(new CssLexer(readSource(source), syntax));
+		if (stylesheet != null) {
+			optimize(stylesheet, settings);
+
+			CriticalCssSplitter.Split split = splitter.split(stylesheet);
+			CssFormatter formatter = new CssFormatter(settings);
+			formatter.write(critical, split.getCritical());
+			formatter.write(deferred, split.getDeferred());
+		}
+	}
+
+	/**
+	 * Determines if the settings require the whole AST rather than streaming
+	 */
+	private static boolean usesAST(CodeGenSettings settings) {
+		return settings.useOptimizations() || (settings.getPruner() != null);
+	}
+
+	/**
+	 * Applies the optimizations enabled by the settings
+	 * @param stylesheet
+	 * @param settings
+	 */
+	static void optimize(StyleSheetNode stylesheet, CodeGenSettings settings) {
+		if (settings.getPruner() != null) {
+			// fewer rule-sets remain to be merged
+			settings.getPruner().optimize(stylesheet);
+		}
+
+		if (settings.useOptimizations()) {
+			optimize(stylesheet);
+		}
+	}
+
+	/**
+	 * Applies each structural optimization in turn
+	 * @param stylesheet
+	 */
+	static void optimize(StyleSheetNode stylesheet) {
+		for (CssOptimizer optimizer : OPTIMIZERS) {
+			optimizer.optimize(stylesheet);
+		}
+	}
+
+	static Syntax getSyntax(File source) {
+		String ext = source.getName();
+		ext = ext.substring(Math.max(ext.lastIndexOf('.'), 0)).toLowerCase(Locale.ROOT);
+		return LESS_EXT.equals(ext) ? Syntax.LESS : Syntax.CSS;
+	}
+
+	/**
+	 * Writes the source map file
+	 * @throws IOException
+	 */
+	private static void writeSourceMap(SourceMap sourceMap, File mapFile, String targetName)
+		throws IOException {
+
+		Writer writer = new OutputStreamWriter(new FileOutputStream(mapFile, false), UTF8);
+		try {
+			sourceMap.write(writer, targetName);
+
+		} finally {
+			writer.flush();
+			writer.close();
+		}
+	}
+
+	/**
+	 * Builds a URL-style path to the file relative to the folder
+	 */
+	static String getRelativePath(File folder, File file) {
+		try {
+			return folder.getCanonicalFile().toPath().relativize(file.getCanonicalFile().toPath()).toString().replace('\\', '/');
+
+		} catch (IOException ex) {
+			return file.getName();
+
+		} catch (IllegalArgumentException ex) {
+			// e.g. different roots
+			return file.toURI().toString();
+		}
+	}
+
+	/**
+	 * Reads the source file onto the heap and decodes it as UTF-8 directly into the scan buffer
+	 * @param source
+	 * @return
+	 * @throws IOException
+	 */
+	static CharBuffer readSource(File source) throws IOException {
+		return decodeSource(readFile(source, false));
+	}
+
+	/**
+	 * Reads the file contents. Mapping saves a heap copy of large files but keeps the file
+	 * locked on Windows until the mapping is collected, which blocks editor saves, so only
+	 * one-shot builds map and resident processes (watch mode, the server) always read.
+	 * @param file
+	 * @param map allows memory-mapping files of MAP_THRESHOLD or more
+	 * @return
+	 * @throws IOException
+	 */
+	static ByteBuffer readFile(File file, boolean map) throws IOException {
+		FileInputStream stream = new FileInputStream(file);
+		try {
+			FileChannel channel = stream.getChannel();
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("File too large: "+file.getAbsolutePath());
+			}
+
+			if (map && size >= MAP_THRESHOLD) {
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			}
+
+			ByteBuffer bytes = ByteBuffer.allocate((int)size);
+			while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+				// read until full or the file was truncated meanwhile
+			}
+			bytes.flip();
+			return bytes;
+
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Decodes UTF-8 bytes directly into a scan buffer
+	 * @param bytes
+	 * @return
+	 * @throws IOException
+	 */
+	static CharBuffer decodeSource(ByteBuffer bytes) throws IOException {
+		CharsetDecoder decoder = UTF8.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+		// UTF-8 never decodes to more chars than bytes
+		CharBuffer chars = CharBuffer.allocate(bytes.remaining());
+		CoderResult result = decoder.decode(bytes, chars, true);
+		if (result.isUnderflow()) {
+			result = decoder.flush(chars);
+		}
+		if (result.isError()) {
+			result.throwException();
+		}
+		chars.flip();
+
+		if (chars.hasRemaining() && chars.get(chars.position()) == BOM) {
+			// skip byte-order mark
+			chars.position(chars.position()+1);
+		}
+		return chars;
+	}
+
+	void reportSyntaxErrors(File inputFile, List<SyntaxException> errors, boolean verbose) {
+		if (errors == null) {
+			return;
+		}
+
+		for (SyntaxException ex : errors) {
+			reportSyntaxError(inputFile, ex, verbose);
+		}
+		if (errors.size() > 1) {
+			log.error(String.format("%s: %d errors", inputFile.getAbsolutePath(), errors.size()));
 		}
 	}
 
@@ -149,29 +671,19 @@ public class CssCompiler {
 				ex.getLine(),
 				message));
 
-			int col = ex.getColumn(),
-				line=ex.getLine();
+			int col = ex.getColumn();
 
-			String text = "";
-			LineNumberReader reader = null;
-			try {
-				reader = new LineNumberReader(new FileReader(inputFile));
-				for (int i=-1; i<line; i++) {
-					text = reader.readLine();
-				}
-			} finally {
-				if (reader != null) {
-					reader.close();
+			// sliced from the lexed buffer rather than re-reading the file
+			String text = ex.getSourceLine();
+			if (text != null) {
+				log.error(text);
+				if (col > 0) {
+					log.error(String.format("%"+col+"s", "^"));
+				} else {
+					log.error("^");
 				}
 			}
 
-			log.error(text);
-			if (col > 0) {
-				log.error(String.format("%"+col+"s", "^"));
-			} else {
-				log.error("^");
-			}
-
 			if (verbose) {
 				ex.printStackTrace();
 			}
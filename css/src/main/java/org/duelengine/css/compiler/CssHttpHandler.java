@@ -0,0 +1,176 @@
+package org.duelengine.css.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+
+import org.duelengine.css.parsing.SyntaxException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves stylesheets compiled on demand, e.g. GET /theme.css compiles theme.less
+ * (or theme.css) from the source root. Responses carry an ETag and conditional
+ * requests for unchanged output are answered with 304 Not Modified.
+ */
+public class CssHttpHandler implements HttpHandler {
+
+	private static final Logger log = LoggerFactory.getLogger(CssHttpHandler.class);
+	private static final String CONTENT_TYPE = "text/css; charset=UTF-8";
+
+	private final StylesheetCache cache;
+
+	/**
+	 * Ctor
+	 * @param stylesheetCache
+	 */
+	public CssHttpHandler(StylesheetCache stylesheetCache) {
+		if (stylesheetCache == null) {
+			throw new NullPointerException("stylesheetCache");
+		}
+
+		cache = stylesheetCache;
+	}
+
+	/**
+	 * Starts a server which handles all requests with a CssHttpHandler
+	 * @param address
+	 * @param cache
+	 * @return the running server
+	 * @throws IOException
+	 */
+	public static HttpServer start(InetSocketAddress address, StylesheetCache cache)
+		throws IOException {
+
+		HttpServer server = HttpServer.create(address, 0);
+		server.createContext("/", new CssHttpHandler(cache));
+		// requests for different sheets should not queue behind a compilation
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.start();
+		return server;
+	}
+
+	@Override
+	public void handle(HttpExchange exchange)
+		throws IOException {
+
+		try {
+			String method = exchange.getRequestMethod();
+			boolean head = "HEAD".equals(method);
+			if (!head && !"GET".equals(method)) {
+				exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+				sendError(exchange, 405, "Method not allowed");
+				return;
+			}
+
+			File source = findSource(exchange.getRequestURI().getPath());
+			if (source == null) {
+				sendError(exchange, 404, "Not found");
+				return;
+			}
+
+			StylesheetCache.Entry entry;
+			try {
+				entry = cache.get(source);
+
+			} catch (SyntaxException ex) {
+				log.error(String.format("%s:%d: %s", source.getPath(), ex.getLine(), ex.getMessage()));
+				sendError(exchange, 500, "Syntax error: "+source.getName()+":"+ex.getLine()+": "+ex.getMessage());
+				return;
+
+			} catch (IOException ex) {
+				// e.g. the source could not be read
+				log.error("Unable to compile "+source.getPath(), ex);
+				sendError(exchange, 500, "Unable to compile: "+source.getName());
+				return;
+
+			} catch (RuntimeException ex) {
+				// e.g. an evaluation error
+				log.error("Unable to compile "+source.getPath(), ex);
+				sendError(exchange, 500, "Unable to compile: "+source.getName());
+				return;
+			}
+
+			exchange.getResponseHeaders().set("ETag", entry.getETag());
+			exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+
+			if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), entry.getETag())) {
+				exchange.sendResponseHeaders(304, -1);
+				return;
+			}
+
+			byte[] content = entry.getContent();
+			exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+			if (head) {
+				exchange.getResponseHeaders().set("Content-Length", String.valueOf(content.length));
+				exchange.sendResponseHeaders(200, -1);
+				return;
+			}
+
+			exchange.sendResponseHeaders(200, content.length);
+			OutputStream body = exchange.getResponseBody();
+			body.write(content);
+			body.flush();
+
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Maps a request path to its source, preferring LESS over CSS
+	 */
+	private File findSource(String path)
+		throws IOException {
+
+		if (path == null || !path.toLowerCase(Locale.ROOT).endsWith(CssCompiler.CSS_EXT)) {
+			return null;
+		}
+
+		String base = path.substring(0, path.length()-CssCompiler.CSS_EXT.length());
+		File source = cache.resolve(base+CssCompiler.LESS_EXT);
+		if (source == null) {
+			source = cache.resolve(base+CssCompiler.CSS_EXT);
+		}
+		return source;
+	}
+
+	/**
+	 * Determines if an If-None-Match header matches the entity tag
+	 */
+	static boolean matches(String header, String etag) {
+		if (header == null) {
+			return false;
+		}
+
+		for (String tag : header.split(",")) {
+			tag = tag.trim();
+			if (tag.startsWith("W/")) {
+				// weak comparison
+				tag = tag.substring(2);
+			}
+			if ("*".equals(tag) || etag.equals(tag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void sendError(HttpExchange exchange, int status, String message)
+		throws IOException {
+
+		byte[] content = message.getBytes(CssCompiler.UTF8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+		exchange.sendResponseHeaders(status, content.length);
+		OutputStream body = exchange.getResponseBody();
+		body.write(content);
+		body.flush();
+	}
+}
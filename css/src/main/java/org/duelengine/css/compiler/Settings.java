@@ -11,8 +11,19 @@ import java.util.Set;
 
 public class Settings {
 
+	private static final String CACHE_FILE = ".css-cache";
+
 	private boolean prettyPrint;
 	private boolean verbose;
+	private int threads = 1;
+	private boolean force;
+	private boolean watch;
+	private boolean sourceMap;
+	private boolean gzip;
+	private boolean optimize;
+	private File pruneFile;
+	private int servePort;
+	private File cacheFile;
 	private File target;
 	private File source;
 
@@ -32,6 +43,181 @@ public class Settings {
 		verbose = value;
 	}
 	
+	/**
+	 * Gets the number of files compiled concurrently
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Sets the number of files compiled concurrently (zero or less uses all processors)
+	 * @param value
+	 */
+	public void setThreads(int value) {
+		threads = (value > 0) ? value : Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Gets if unchanged sources should be recompiled anyway
+	 */
+	public boolean getForce() {
+		return force;
+	}
+
+	/**
+	 * Sets if unchanged sources should be recompiled anyway
+	 * @param value
+	 */
+	public void setForce(boolean value) {
+		force = value;
+	}
+
+	/**
+	 * Gets if sources should be watched and recompiled as they change
+	 */
+	public boolean getWatch() {
+		return watch;
+	}
+
+	/**
+	 * Sets if sources should be watched and recompiled as they change
+	 * @param value
+	 */
+	public void setWatch(boolean value) {
+		watch = value;
+	}
+
+	/**
+	 * Gets if a source map should be written alongside each output
+	 */
+	public boolean getSourceMap() {
+		return sourceMap;
+	}
+
+	/**
+	 * Sets if a source map should be written alongside each output
+	 * @param value
+	 */
+	public void setSourceMap(boolean value) {
+		sourceMap = value;
+	}
+
+	/**
+	 * Gets if a gzip-compressed copy (.css.gz) should be written alongside each output
+	 */
+	public boolean getGzip() {
+		return gzip;
+	}
+
+	/**
+	 * Sets if a gzip-compressed copy (.css.gz) should be written alongside each output
+	 * @param value
+	 */
+	public void setGzip(boolean value) {
+		gzip = value;
+	}
+
+	/**
+	 * Gets if structural optimizations should be applied to the output
+	 */
+	public boolean getOptimize() {
+		return optimize;
+	}
+
+	/**
+	 * Sets if structural optimizations should be applied to the output
+	 * @param value
+	 */
+	public void setOptimize(boolean value) {
+		optimize = value;
+	}
+
+	/**
+	 * Gets the inventory of class names, ids and element names in use, or null if not pruning
+	 */
+	public File getPruneFile() {
+		return pruneFile;
+	}
+
+	/**
+	 * Sets the inventory of class names, ids and element names in use, or null if not pruning
+	 * @param value
+	 */
+	public void setPruneFile(String value) {
+		if (value == null || value.isEmpty()) {
+			pruneFile = null;
+			return;
+		}
+
+		pruneFile = new File(value.replace('\\', '/'));
+	}
+
+	/**
+	 * Gets the port on which to serve sources compiled on demand (zero if not serving)
+	 */
+	public int getServePort() {
+		return servePort;
+	}
+
+	/**
+	 * Sets the port on which to serve sources compiled on demand (zero if not serving)
+	 * @param value
+	 */
+	public void setServePort(int value) {
+		servePort = Math.max(value, 0);
+	}
+
+	/**
+	 * Gets the location of the incremental build manifest (default: <target-dir>/.css-cache)
+	 */
+	public File getCacheFile() {
+		if (cacheFile == null) {
+			File target = getTarget();
+			if (target != null && target.isFile()) {
+				target = target.getParentFile();
+			}
+			return new File(target, CACHE_FILE);
+		}
+
+		return cacheFile;
+	}
+
+	public void setCacheFile(String value) {
+		if (value == null || value.isEmpty()) {
+			cacheFile = null;
+			return;
+		}
+
+		cacheFile = new File(value.replace('\\', '/'));
+	}
+
+	/**
+	 * Describes every setting which affects the generated output
+	 * @throws IOException 
+	 */
+	String getFingerprint() throws IOException {
+		StringBuilder buffer = new StringBuilder();
+		buffer.append("pretty=").append(prettyPrint);
+		if (prettyPrint) {
+			buffer.append(";newline=").append(System.getProperty("line.separator").replace("\r", "\\r").replace("\n", "\\n"));
+		}
+		if (sourceMap) {
+			buffer.append(";sourcemap=true");
+		}
+		if (gzip) {
+			buffer.append(";gzip=true");
+		}
+		if (optimize) {
+			buffer.append(";optimize=true");
+		}
+		if (pruneFile != null) {
+			// any change to the inventory invalidates every output
+			buffer.append(";prune=").append(BuildCache.hash(pruneFile));
+		}
+		return buffer.toString();
+	}
+
 	public File getSource() {
 		return source;
 	}
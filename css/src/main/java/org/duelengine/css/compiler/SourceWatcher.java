@@ -0,0 +1,214 @@
+package org.duelengine.css.compiler;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.duelengine.css.codegen.CodeGenSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Recompiles sources as they change, keeping the compiler resident between builds
+ */
+final class SourceWatcher {
+
+	private static final Logger log = LoggerFactory.getLogger(SourceWatcher.class);
+
+	// quiet period which collapses bursts of events (e.g. editor save sequences) into one build
+	private static final long DEBOUNCE_MS = 100;
+
+	private final CssCompiler compiler;
+	private final Settings settings;
+	private final CodeGenSettings formatSettings;
+	private final BuildCache cache;
+	private final Map<WatchKey, Path> keys = new HashMap<WatchKey, Path>();
+	private final Map<File, Long> written = new HashMap<File, Long>();
+
+	public SourceWatcher(CssCompiler compiler, Settings settings, CodeGenSettings formatSettings, BuildCache cache) {
+		this.compiler = compiler;
+		this.settings = settings;
+		this.formatSettings = formatSettings;
+		this.cache = cache;
+	}
+
+	/**
+	 * Blocks watching the source tree until the thread is interrupted
+	 * @throws IOException
+	 */
+	public void run() throws IOException {
+		File source = settings.getSource();
+		File root = source.isDirectory() ? source : source.getAbsoluteFile().getParentFile();
+
+		WatchService watcher = FileSystems.getDefault().newWatchService();
+		try {
+			registerAll(watcher, root.toPath(), null);
+			log.info("Watching "+source.getAbsolutePath()+" for changes");
+
+			while (true) {
+				WatchKey key = watcher.take();
+
+				// collect events until the tree is quiet
+				Set<File> changed = new LinkedHashSet<File>();
+				boolean overflow = false;
+				while (key != null) {
+					overflow |= collect(watcher, key, changed);
+					key = watcher.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+				}
+
+				try {
+					List<File> inputFiles = overflow ?
+						settings.findFiles(CssCompiler.CSS_EXT, CssCompiler.LESS_EXT) :
+						filter(changed, source);
+
+					if (!inputFiles.isEmpty()) {
+						compiler.build(settings, inputFiles, formatSettings, cache);
+						rememberOutputs(inputFiles);
+					}
+
+				} catch (InterruptedIOException ex) {
+					throw new InterruptedException(ex.getMessage());
+
+				} catch (IOException ex) {
+					// e.g. a file deleted or locked by the editor mid-build, the next save retries
+					log.error("Build failed, still watching for changes", ex);
+
+				} catch (RuntimeException ex) {
+					log.error("Build failed, still watching for changes", ex);
+				}
+			}
+
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+
+		} finally {
+			watcher.close();
+		}
+	}
+
+	/**
+	 * Queues changed files from a key, registering any new directories
+	 * @return true if events were lost and a full rebuild is needed
+	 */
+	private boolean collect(WatchService watcher, WatchKey key, Set<File> changed) {
+		boolean overflow = false;
+		Path dir = keys.get(key);
+
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW) {
+				overflow = true;
+				continue;
+			}
+			if (dir == null) {
+				continue;
+			}
+
+			Path path = dir.resolve((Path)event.context());
+			if (Files.isDirectory(path)) {
+				if (event.kind() == ENTRY_CREATE) {
+					try {
+						// new folders may arrive already populated
+						registerAll(watcher, path, changed);
+					} catch (IOException ex) {
+						// e.g. removed again before it could be walked
+						log.warn("Unable to watch "+path, ex);
+					}
+				}
+				continue;
+			}
+
+			changed.add(path.toFile());
+		}
+
+		if (!key.reset()) {
+			// directory no longer accessible
+			keys.remove(key);
+		}
+		return overflow;
+	}
+
+	private void registerAll(final WatchService watcher, Path start, final Set<File> found)
+		throws IOException {
+
+		Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				keys.put(dir.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if (found != null) {
+					found.add(file.toFile());
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Narrows changed files to sources which are not our own freshly written output
+	 */
+	private List<File> filter(Set<File> changed, File source) {
+		List<File> inputFiles = new ArrayList<File>(changed.size());
+
+		for (File file : changed) {
+			if (!CssCompiler.isSourceFile(file)) {
+				continue;
+			}
+			if (source.isFile() && !source.getAbsoluteFile().equals(file.getAbsoluteFile())) {
+				// only watching a single file
+				continue;
+			}
+			if (!file.exists()) {
+				// still missing once quiet so not an editor's delete-and-replace save
+				if (!written.containsKey(file.getAbsoluteFile())) {
+					log.warn(file.getPath()+" was deleted, its output "+CssCompiler.getTargetFile(settings, file).getPath()+" is left in place");
+				}
+				continue;
+			}
+			if (!file.isFile()) {
+				continue;
+			}
+
+			Long modified = written.get(file.getAbsoluteFile());
+			if (modified != null && modified.longValue() == file.lastModified()) {
+				// event was caused by the previous build
+				continue;
+			}
+
+			inputFiles.add(file);
+		}
+
+		return inputFiles;
+	}
+
+	private void rememberOutputs(List<File> inputFiles) {
+		for (File inputFile : inputFiles) {
+			File target = CssCompiler.getTargetFile(settings, inputFile).getAbsoluteFile();
+			written.put(target, target.lastModified());
+		}
+	}
+}
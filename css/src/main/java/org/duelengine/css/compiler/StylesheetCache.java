@@ -0,0 +1,210 @@
+package org.duelengine.css.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.duelengine.css.codegen.CodeGenSettings;
+import org.duelengine.css.parsing.SyntaxException;
+
+/**
+ * Bounded LRU cache of stylesheets compiled on demand, keyed by source path
+ * and revalidated against the source modification time and size.
+ * Concurrent requests for the same uncached source wait on a single compilation.
+ * Syntax errors are cached until the source changes, other failures are retried.
+ * Safe to use concurrently.
+ */
+public class StylesheetCache {
+
+	public static final int DEFAULT_CAPACITY = 256;
+
+	/**
+	 * Compiled output of a single source
+	 */
+	public static class Entry {
+		private final byte[] content;
+		private final String etag;
+
+		Entry(byte[] content) {
+			this.content = content;
+			etag = '"'+BuildCache.hash(ByteBuffer.wrap(content))+'"';
+		}
+
+		/**
+		 * Gets the UTF-8 encoded output
+		 */
+		public byte[] getContent() {
+			return content;
+		}
+
+		/**
+		 * Gets the quoted entity tag derived from the output
+		 */
+		public String getETag() {
+			return etag;
+		}
+	}
+
+	private static class Slot {
+		private final long lastModified;
+		private final long length;
+		private final FutureTask<Entry> task;
+
+		Slot(long lastModified, long length, FutureTask<Entry> task) {
+			this.lastModified = lastModified;
+			this.length = length;
+			this.task = task;
+		}
+	}
+
+	private final CssCompiler compiler;
+	private final File root;
+	private final CodeGenSettings settings;
+	private final Map<String, Slot> slots;
+
+	/**
+	 * Ctor
+	 * @param compiler
+	 * @param sourceRoot folder containing the sources
+	 * @param codeGenSettings
+	 * @param capacity maximum number of compiled sources retained
+	 */
+	public StylesheetCache(CssCompiler compiler, File sourceRoot, CodeGenSettings codeGenSettings, final int capacity) {
+		if (compiler == null) {
+			throw new NullPointerException("compiler");
+		}
+		if (sourceRoot == null) {
+			throw new NullPointerException("sourceRoot");
+		}
+
+		this.compiler = compiler;
+		root = sourceRoot;
+		settings = (codeGenSettings != null) ? codeGenSettings : new CodeGenSettings();
+
+		// access-ordered so that the least recently used are evicted
+		slots = new LinkedHashMap<String, Slot>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Slot> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Gets the source root
+	 */
+	public File getRoot() {
+		return root;
+	}
+
+	/**
+	 * Resolves a path relative to the source root, rejecting any which escape it
+	 * @param path
+	 * @return the source file or null if not found
+	 * @throws IOException
+	 */
+	public File resolve(String path) throws IOException {
+		if (path == null) {
+			return null;
+		}
+
+		File base = root.getCanonicalFile();
+		File file = new File(base, path).getCanonicalFile();
+		if (!file.isFile() || !file.getPath().startsWith(base.getPath()+File.separator)) {
+			return null;
+		}
+		return file;
+	}
+
+	/**
+	 * Gets the compiled output for the source, compiling if missing or out-of-date
+	 * @param source
+	 * @return
+	 * @throws IOException
+	 * @throws org.duelengine.css.parsing.SyntaxException
+	 */
+	public Entry get(final File source) throws IOException {
+		String key = source.getCanonicalPath();
+		long lastModified = source.lastModified();
+		long length = source.length();
+
+		Slot slot;
+		boolean owner = false;
+		synchronized (slots) {
+			slot = slots.get(key);
+			if (slot == null || slot.lastModified != lastModified || slot.length != length) {
+				slot = new Slot(lastModified, length, new FutureTask<Entry>(new Callable<Entry>() {
+					public Entry call() throws IOException {
+						return compile(source);
+					}
+				}));
+				slots.put(key, slot);
+				owner = true;
+			}
+		}
+
+		if (owner) {
+			// compile outside of the lock, other callers wait on the result
+			slot.task.run();
+		}
+
+		try {
+			return slot.task.get();
+
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(ex.getMessage());
+
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (!(cause instanceof SyntaxException)) {
+				// only syntax errors are certain to recur until the source changes
+				synchronized (slots) {
+					if (slots.get(key) == slot) {
+						slots.remove(key);
+					}
+				}
+			}
+
+			if (cause instanceof IOException) {
+				throw (IOException)cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Gets the number of cached sources
+	 */
+	public int size() {
+		synchronized (slots) {
+			return slots.size();
+		}
+	}
+
+	/**
+	 * Compiles the source
+	 * @param source
+	 * @return
+	 * @throws IOException
+	 */
+	protected Entry compile(File source) throws IOException {
+		StringBuilder output = new StringBuilder();
+		compiler.compile(source, output, settings);
+		return new Entry(output.toString().getBytes(CssCompiler.UTF8));
+	}
+}
@@ -0,0 +1,66 @@
+package org.duelengine.css.compiler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the same bytes to two streams so that additional
+ * artifacts may be produced in a single pass over the output.
+ */
+class TeeOutputStream extends OutputStream {
+
+	private final OutputStream first;
+	private final OutputStream second;
+
+	/**
+	 * Ctor
+	 * @param first
+	 * @param second
+	 */
+	TeeOutputStream(OutputStream first, OutputStream second) {
+		if (first == null) {
+			throw new NullPointerException("first");
+		}
+		if (second == null) {
+			throw new NullPointerException("second");
+		}
+
+		this.first = first;
+		this.second = second;
+	}
+
+	@Override
+	public void write(int b)
+		throws IOException {
+
+		first.write(b);
+		second.write(b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len)
+		throws IOException {
+
+		first.write(b, off, len);
+		second.write(b, off, len);
+	}
+
+	@Override
+	public void flush()
+		throws IOException {
+
+		first.flush();
+		second.flush();
+	}
+
+	@Override
+	public void close()
+		throws IOException {
+
+		try {
+			first.close();
+		} finally {
+			second.close();
+		}
+	}
+}
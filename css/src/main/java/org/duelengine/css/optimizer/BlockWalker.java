@@ -0,0 +1,48 @@
+package org.duelengine.css.optimizer;
+
+import org.duelengine.css.ast.AtRuleNode;
+import org.duelengine.css.ast.ContainerNode;
+import org.duelengine.css.ast.CssNode;
+import org.duelengine.css.ast.CssVisitor;
+import org.duelengine.css.ast.DeclarationNode;
+import org.duelengine.css.ast.SelectorNode;
+
+/**
+ * Visits the stylesheet, every at-rule block and every rule-set, descending into
+ * nested blocks before returning from their container. Selectors, declarations and
+ * at-rule preludes are not entered. Implementations override the container types they
+ * rewrite and call the base method to walk the children first.
+ */
+abstract class BlockWalker implements CssVisitor<Void, Void> {
+
+	@Override
+	public Void visitNode(CssNode node, Void context) {
+		return null;
+	}
+
+	@Override
+	public Void visitContainer(ContainerNode node, Void context) {
+		for (CssNode child : node.getChildren()) {
+			child.accept(this, context);
+		}
+		return null;
+	}
+
+	@Override
+	public Void visitAtRule(AtRuleNode node, Void context) {
+		if (node.getBlock() != null) {
+			node.getBlock().accept(this, context);
+		}
+		return null;
+	}
+
+	@Override
+	public Void visitSelector(SelectorNode node, Void context) {
+		return null;
+	}
+
+	@Override
+	public Void visitDeclaration(DeclarationNode node, Void context) {
+		return null;
+	}
+}
@@ -0,0 +1,355 @@
+package org.duelengine.css.optimizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.duelengine.css.ast.AtRuleNode;
+import org.duelengine.css.ast.BlockNode;
+import org.duelengine.css.ast.ColorNode;
+import org.duelengine.css.ast.CommentNode;
+import org.duelengine.css.ast.ContainerNode;
+import org.duelengine.css.ast.CssNode;
+import org.duelengine.css.ast.DeclarationNode;
+import org.duelengine.css.ast.NumericNode;
+import org.duelengine.css.ast.OperatorNode;
+import org.duelengine.css.ast.RuleSetNode;
+import org.duelengine.css.ast.SelectorNode;
+import org.duelengine.css.ast.StringNode;
+import org.duelengine.css.ast.StyleSheetNode;
+import org.duelengine.css.ast.ValueNode;
+import org.duelengine.css.parsing.CssGrammar;
+
+/**
+ * Splits a stylesheet into the critical subset which may match a set of above-the-fold
+ * elements, and the deferred remainder, in a single traversal. Rule-sets are split by selector
+ * and keep the @media context around them. @font-face and @keyframes rules go with the
+ * critical rule-sets which name them. The remainder is meant to load after the critical subset,
+ * so a critical rule-set is repeated there when an earlier deferred rule-set sets the same
+ * properties. The source is left unchanged, including parent links: both halves share its nodes
+ * without re-parenting them, so getParent() on a shared node still leads into the source.
+ * Holds no mutable state so is safe to use concurrently.
+ */
+public class CriticalCssSplitter {
+
+	private static final String CHARSET = "charset";
+	private static final String IMPORT = "import";
+	private static final String NAMESPACE = "namespace";
+	private static final String FONT_FACE = "font-face";
+	private static final String KEYFRAMES = "keyframes";
+	private static final String FONT_FAMILY = "font-family";
+
+	// properties which name @font-face or @keyframes rules
+	private static final Set<String> referencing = new HashSet<String>(Arrays.asList(
+		"font", FONT_FAMILY, "animation", "animation-name"));
+
+	/**
+	 * The two halves of a stylesheet, each ready for CssFormatter
+	 */
+	public static class Split {
+		private final StyleSheetNode critical = new StyleSheetNode();
+		private final StyleSheetNode deferred = new StyleSheetNode();
+
+		/**
+		 * Gets the rules needed to render the above-the-fold elements
+		 */
+		public StyleSheetNode getCritical() {
+			return critical;
+		}
+
+		/**
+		 * Gets the rules which may be loaded after the critical subset
+		 */
+		public StyleSheetNode getDeferred() {
+			return deferred;
+		}
+	}
+
+	/**
+	 * State for a single traversal
+	 */
+	private static class Context {
+		// property families set by deferred rule-sets so far
+		private final Set<String> deferredFamilies = new HashSet<String>();
+		// words used by critical declarations which may name a font or animation
+		private final Set<String> referenced = new HashSet<String>();
+		// top-level @font-face and @keyframes rules placed once every reference is known
+		private final List<AtRuleNode> named = new ArrayList<AtRuleNode>();
+	}
+
+	private final SelectorInventory inventory;
+
+	/**
+	 * @param classNames class names of the above-the-fold elements
+	 * @param ids ids of the above-the-fold elements
+	 * @param elementNames element names of the above-the-fold elements (case-insensitive)
+	 */
+	public CriticalCssSplitter(Collection<String> classNames, Collection<String> ids, Collection<String> elementNames) {
+		this(new SelectorInventory(classNames, ids, elementNames));
+	}
+
+	private CriticalCssSplitter(SelectorInventory inventory) {
+		this.inventory = inventory;
+	}
+
+	/**
+	 * Reads the above-the-fold elements written in selector notation, e.g. ".nav #main div",
+	 * separated by whitespace or commas
+	 * @param inventory
+	 * @return
+	 */
+	public static CriticalCssSplitter parse(CharSequence inventory) {
+		return new CriticalCssSplitter(SelectorInventory.parse(inventory));
+	}
+
+	/**
+	 * Splits the stylesheet into its critical subset and deferred remainder
+	 * @param stylesheet
+	 * @return
+	 */
+	public Split split(StyleSheetNode stylesheet) {
+		if (stylesheet == null) {
+			throw new NullPointerException("stylesheet");
+		}
+
+		Split split = new Split();
+		Context context = new Context();
+		split(stylesheet, split.critical, split.deferred, context);
+
+		int criticalIndex = getPrologueLength(split.critical);
+		int deferredIndex = getPrologueLength(split.deferred);
+		for (AtRuleNode atRule : context.named) {
+			if (isReferenced(atRule, context.referenced)) {
+				split.critical.getChildren().add(criticalIndex++, atRule);
+			} else {
+				split.deferred.getChildren().add(deferredIndex++, atRule);
+			}
+		}
+
+		return split;
+	}
+
+	private void split(ContainerNode source, ContainerNode critical, ContainerNode deferred, Context context) {
+		for (CssNode child : source.getChildren()) {
+			if (child instanceof RuleSetNode) {
+				splitRuleSet((RuleSetNode)child, critical, deferred, context);
+
+			} else if (child instanceof AtRuleNode) {
+				splitAtRule((AtRuleNode)child, critical, deferred, context, (source instanceof StyleSheetNode));
+
+			} else if (child instanceof CommentNode) {
+				share(deferred, child);
+
+			} else {
+				share(critical, child);
+				share(deferred, child);
+			}
+		}
+	}
+
+	private void splitRuleSet(RuleSetNode ruleSet, ContainerNode critical, ContainerNode deferred, Context context) {
+		List<SelectorNode> matching = new ArrayList<SelectorNode>();
+		List<SelectorNode> others = new ArrayList<SelectorNode>();
+		for (SelectorNode selector : ruleSet.getSelectors()) {
+			if (inventory.mayMatch(selector)) {
+				matching.add(selector);
+			} else {
+				others.add(selector);
+			}
+		}
+
+		Set<String> families = new HashSet<String>();
+		for (CssNode child : ruleSet.getChildren()) {
+			if (child instanceof DeclarationNode) {
+				families.add(PropertyFamilies.family(((DeclarationNode)child).getIdent()));
+			}
+		}
+
+		if (!matching.isEmpty()) {
+			RuleSetNode part = others.isEmpty() ? ruleSet : copy(ruleSet, matching);
+			share(critical, part);
+			addReferences(ruleSet, context.referenced);
+
+			if (overrides(context.deferredFamilies, families)) {
+				// restore cascade order for elements below the fold
+				share(deferred, part);
+			}
+		}
+
+		if (!others.isEmpty() || matching.isEmpty()) {
+			share(deferred, matching.isEmpty() ? ruleSet : copy(ruleSet, others));
+			context.deferredFamilies.addAll(families);
+		}
+	}
+
+	private void splitAtRule(AtRuleNode atRule, ContainerNode critical, ContainerNode deferred, Context context, boolean topLevel) {
+		String keyword = getKeyword(atRule);
+		BlockNode block = atRule.getBlock();
+
+		if (block == null) {
+			if (CHARSET.equals(keyword) || NAMESPACE.equals(keyword)) {
+				// each half is a separate stylesheet
+				share(critical, atRule);
+			}
+			share(deferred, atRule);
+
+		} else if (FONT_FACE.equals(keyword) || KEYFRAMES.equals(keyword)) {
+			if (topLevel) {
+				context.named.add(atRule);
+			} else {
+				// rare enough to keep in both rather than move out of context
+				share(critical, atRule);
+				share(deferred, atRule);
+			}
+
+		} else if (hasRuleSets(block)) {
+			// conditional group rule, e.g. @media or @supports
+			BlockNode criticalBlock = new BlockNode();
+			BlockNode deferredBlock = new BlockNode();
+			split(block, criticalBlock, deferredBlock, context);
+
+			if (criticalBlock.hasChildren()) {
+				share(critical, copy(atRule, criticalBlock));
+			}
+			if (deferredBlock.hasChildren()) {
+				share(deferred, copy(atRule, deferredBlock));
+			}
+
+		} else {
+			// e.g. @page
+			share(deferred, atRule);
+		}
+	}
+
+	/**
+	 * Adds a node to a half as is, since appendChild would evaluate it again and re-parent it
+	 */
+	private static void share(ContainerNode container, CssNode child) {
+		container.getChildren().add(child);
+	}
+
+	private static RuleSetNode copy(RuleSetNode ruleSet, List<SelectorNode> selectors) {
+		RuleSetNode copy = new RuleSetNode(ruleSet.getIndex(), ruleSet.getLine(), ruleSet.getColumn());
+		copy.getSelectors().addAll(selectors);
+		copy.getChildren().addAll(ruleSet.getChildren());
+		return copy;
+	}
+
+	private static AtRuleNode copy(AtRuleNode atRule, BlockNode block) {
+		AtRuleNode copy = new AtRuleNode(atRule.getKeyword(), atRule.getIndex(), atRule.getLine(), atRule.getColumn());
+		copy.getChildren().addAll(atRule.getChildren());
+		copy.setBlock(block);
+		return copy;
+	}
+
+	private static String getKeyword(AtRuleNode atRule) {
+		String keyword = atRule.getKeyword();
+		return (keyword != null) ? CssGrammar.removeVendorPrefix(keyword.toLowerCase(Locale.ROOT)) : null;
+	}
+
+	private static boolean hasRuleSets(BlockNode block) {
+		for (CssNode child : block.getChildren()) {
+			if (child instanceof RuleSetNode || child instanceof AtRuleNode) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Determines if a rule-set setting the families could be overridden by the deferred rule-sets
+	 */
+	private static boolean overrides(Set<String> deferredFamilies, Set<String> families) {
+		if (deferredFamilies.isEmpty() || families.isEmpty()) {
+			return false;
+		}
+		if (deferredFamilies.contains(PropertyFamilies.ALL) || families.contains(PropertyFamilies.ALL)) {
+			return true;
+		}
+
+		for (String family : families) {
+			if (deferredFamilies.contains(family)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Counts the leading at-rules which must precede every other rule
+	 */
+	private static int getPrologueLength(StyleSheetNode stylesheet) {
+		int count = 0;
+		for (CssNode child : stylesheet.getChildren()) {
+			String keyword = (child instanceof AtRuleNode) ? getKeyword((AtRuleNode)child) : null;
+			if (!CHARSET.equals(keyword) && !IMPORT.equals(keyword) && !NAMESPACE.equals(keyword)) {
+				break;
+			}
+			count++;
+		}
+		return count;
+	}
+
+	private static void addReferences(RuleSetNode ruleSet, Set<String> referenced) {
+		for (CssNode child : ruleSet.getChildren()) {
+			if (child instanceof DeclarationNode) {
+				String ident = ((DeclarationNode)child).getIdent();
+				if (ident != null && referencing.contains(CssGrammar.removeVendorPrefix(ident.toLowerCase(Locale.ROOT)))) {
+					addWords((DeclarationNode)child, referenced);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Determines if the @font-face or @keyframes rule is named by a critical declaration
+	 */
+	private static boolean isReferenced(AtRuleNode atRule, Set<String> referenced) {
+		Set<String> name = new HashSet<String>();
+
+		if (FONT_FACE.equals(getKeyword(atRule))) {
+			for (CssNode child : atRule.getBlock().getChildren()) {
+				if (child instanceof DeclarationNode && FONT_FAMILY.equalsIgnoreCase(((DeclarationNode)child).getIdent())) {
+					addWords((DeclarationNode)child, name);
+				}
+			}
+
+		} else {
+			for (CssNode child : atRule.getChildren()) {
+				if (child instanceof ValueNode) {
+					addWord(((ValueNode)child).getValue(), name);
+				}
+			}
+		}
+
+		// unnamed rules are kept with the critical subset
+		return referenced.containsAll(name);
+	}
+
+	private static void addWords(DeclarationNode declaration, Set<String> words) {
+		for (CssNode value : declaration.getChildren()) {
+			if (value instanceof StringNode ||
+				(value instanceof ValueNode && !(value instanceof OperatorNode || value instanceof NumericNode || value instanceof ColorNode))) {
+
+				addWord(((ValueNode)value).getValue(), words);
+			}
+		}
+	}
+
+	private static void addWord(String value, Set<String> words) {
+		if (value == null) {
+			return;
+		}
+
+		// strings keep their quotes
+		for (String word : value.toLowerCase(Locale.ROOT).split("[\\s\"']+")) {
+			if (!word.isEmpty()) {
+				words.add(word);
+			}
+		}
+	}
+}
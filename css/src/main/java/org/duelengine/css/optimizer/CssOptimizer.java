@@ -0,0 +1,11 @@
+package org.duelengine.css.optimizer;
+
+import org.duelengine.css.ast.StyleSheetNode;
+
+/**
+ * Rewrites an evaluated stylesheet in place to produce smaller equivalent output
+ */
+public interface CssOptimizer {
+
+	void optimize(StyleSheetNode stylesheet);
+}
@@ -0,0 +1,186 @@
+package org.duelengine.css.optimizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.duelengine.css.ast.AccessorNode;
+import org.duelengine.css.ast.ColorNode;
+import org.duelengine.css.ast.ContainerNode;
+import org.duelengine.css.ast.ContainerValueNode;
+import org.duelengine.css.ast.CssNode;
+import org.duelengine.css.ast.CssVisitor;
+import org.duelengine.css.ast.DeclarationNode;
+import org.duelengine.css.ast.FunctionNode;
+import org.duelengine.css.ast.LessVariableReferenceNode;
+import org.duelengine.css.ast.NumericNode;
+import org.duelengine.css.ast.OperatorNode;
+import org.duelengine.css.ast.StringNode;
+import org.duelengine.css.ast.StyleSheetNode;
+import org.duelengine.css.ast.ValueNode;
+
+/**
+ * Removes declarations which are overridden by another declaration of the same property
+ * in the same block. The declaration which applies is the last !important one, or else
+ * the last one. Another declaration is only removed when every browser able to parse it
+ * can also parse the one which applies, so that fallback sequences such as
+ * "display:-webkit-box;display:flex" are kept. Holds no state so is safe to use concurrently.
+ */
+public class OverriddenDeclarationRemover implements CssOptimizer {
+
+	private static final String FUNCTION = "function:";
+	private static final String URL = "url";
+
+	// units supported by CSS2 and so understood by every browser
+	private static final Set<String> baselineUnits = new HashSet<String>(Arrays.asList(
+		"", "px", "em", "ex", "%", "pt", "pc", "in", "cm", "mm", "deg", "s", "ms"));
+
+	// CSS2 keywords understood by every browser
+	private static final Set<String> baselineKeywords = new HashSet<String>(Arrays.asList(
+		"inherit", "none", "auto", "normal", "hidden", "visible", "left", "right", "top", "bottom", "center", "middle",
+		"baseline", "block", "inline", "inline-block", "list-item", "table", "static", "relative", "absolute", "fixed",
+		"both", "bold", "bolder", "lighter", "italic", "oblique", "underline", "overline", "line-through", "uppercase",
+		"lowercase", "capitalize", "nowrap", "pre", "solid", "dashed", "dotted", "double", "groove", "ridge", "inset",
+		"outset", "thin", "medium", "thick", "small", "large", "repeat", "no-repeat", "repeat-x", "repeat-y", "scroll",
+		"pointer", "default", "transparent", "collapse", "separate", "justify", "serif", "sans-serif", "monospace"));
+
+	// each block is independent so nested blocks may be rewritten first
+	private final CssVisitor<Void, Void> walker = new BlockWalker() {
+		@Override
+		public Void visitContainer(ContainerNode node, Void context) {
+			super.visitContainer(node, context);
+			removeOverridden(node);
+			return null;
+		}
+	};
+
+	@Override
+	public void optimize(StyleSheetNode stylesheet) {
+		if (stylesheet == null) {
+			throw new NullPointerException("stylesheet");
+		}
+
+		stylesheet.accept(walker, null);
+	}
+
+	private void removeOverridden(ContainerNode container) {
+		// the declaration which applies for each property
+		Map<String, DeclarationNode> winners = null;
+
+		for (CssNode child : container.getChildren()) {
+			if (child instanceof DeclarationNode) {
+				DeclarationNode declaration = (DeclarationNode)child;
+				String property = getProperty(declaration);
+				if (winners == null) {
+					winners = new HashMap<String, DeclarationNode>();
+				}
+
+				DeclarationNode winner = winners.get(property);
+				if (winner == null || declaration.isImportant() || !winner.isImportant()) {
+					winners.put(property, declaration);
+				}
+			}
+		}
+
+		if (winners == null || winners.size() == container.childCount()) {
+			// nothing overridden
+			return;
+		}
+
+		Map<DeclarationNode, Set<String>> winnerFeatures = new HashMap<DeclarationNode, Set<String>>();
+		List<CssNode> kept = new ArrayList<CssNode>(container.childCount());
+		for (CssNode child : container.getChildren()) {
+			if (child instanceof DeclarationNode) {
+				DeclarationNode winner = winners.get(getProperty((DeclarationNode)child));
+				if (winner != child) {
+					Set<String> features = winnerFeatures.get(winner);
+					if (features == null) {
+						features = getFeatures(winner);
+						winnerFeatures.put(winner, features);
+					}
+
+					if (getFeatures((DeclarationNode)child).containsAll(features)) {
+						// any browser which parses this also parses the winner
+						continue;
+					}
+				}
+			}
+			kept.add(child);
+		}
+
+		if (kept.size() < container.childCount()) {
+			List<CssNode> children = container.getChildren();
+			children.clear();
+			children.addAll(kept);
+		}
+	}
+
+	private static String getProperty(DeclarationNode declaration) {
+		String ident = declaration.getIdent();
+		if (ident == null || ident.startsWith("--")) {
+			// custom properties are case-sensitive
+			return ident;
+		}
+		return ident.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Collects the value features which a browser might not support
+	 */
+	private static Set<String> getFeatures(DeclarationNode declaration) {
+		Set<String> features = new HashSet<String>();
+		addFeatures(declaration.getChildren(), features);
+		return features;
+	}
+
+	private static void addFeatures(List<CssNode> values, Set<String> features) {
+		for (CssNode value : values) {
+			if (value instanceof ContainerValueNode) {
+				if (value instanceof FunctionNode) {
+					String name = ((ValueNode)value).getValue().toLowerCase(Locale.ROOT);
+					features.add(FUNCTION+name);
+					if (URL.equals(name)) {
+						// locations are data rather than syntax
+						continue;
+					}
+				} else if (value instanceof AccessorNode) {
+					features.add("accessor:"+((ValueNode)value).getValue().toLowerCase(Locale.ROOT));
+				}
+				addFeatures(((ContainerValueNode)value).getContainer().getChildren(), features);
+
+			} else if (value instanceof NumericNode) {
+				String units = ((NumericNode)value).getUnits();
+				units = (units != null) ? units.toLowerCase(Locale.ROOT) : "";
+				if (!baselineUnits.contains(units)) {
+					features.add("unit:"+units);
+				}
+
+			} else if (value instanceof LessVariableReferenceNode) {
+				features.add("variable:"+((ValueNode)value).getValue());
+
+			} else if (value instanceof ColorNode || value instanceof StringNode || value instanceof OperatorNode) {
+				continue;
+
+			} else if (value instanceof ValueNode) {
+				String keyword = ((ValueNode)value).getValue();
+				keyword = (keyword != null) ? keyword.toLowerCase(Locale.ROOT) : "";
+				if (keyword.startsWith(URL+'(')) {
+					// unquoted urls may be scanned as a single value
+					features.add(FUNCTION+URL);
+
+				} else if (!baselineKeywords.contains(keyword)) {
+					features.add("keyword:"+keyword);
+				}
+
+			} else {
+				// unknown content is never assumed to be supported
+				features.add("node:"+System.identityHashCode(value));
+			}
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package org.duelengine.css.optimizer;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.duelengine.css.parsing.CssGrammar;
+
+/**
+ * Groups properties which may override one another, e.g. shorthands, their longhands
+ * and logical aliases. Grouping is conservative: unrelated properties may share a
+ * family but related ones never fall into different families.
+ */
+final class PropertyFamilies {
+
+	/**
+	 * Overrides everything so cannot be reordered with any declaration
+	 */
+	static final String ALL = "all";
+
+	// roots which override properties outside their own prefix
+	private static final Map<String, String> aliases = new HashMap<String, String>();
+	static {
+		alias("inset", "top", "right", "bottom", "left");
+		alias("align", "place", "justify");
+		alias("grid", "gap", "row", "column", "columns");
+		alias("font", "line");
+		alias("overflow", "word");
+		alias("break", "page");
+		alias("text", "white");
+	}
+
+	private static void alias(String family, String... roots) {
+		for (String root : roots) {
+			aliases.put(root, family);
+		}
+	}
+
+	private PropertyFamilies() {}
+
+	/**
+	 * Gets the family of the property, ignoring any vendor prefix
+	 * @param ident
+	 * @return
+	 */
+	static String family(String ident) {
+		if (ident == null) {
+			return null;
+		}
+
+		String name = ident.toLowerCase(Locale.ROOT);
+		if (name.startsWith("--")) {
+			// custom properties only override themselves
+			return name;
+		}
+
+		name = CssGrammar.removeVendorPrefix(name);
+		int dash = name.indexOf('-');
+		String root = (dash > 0) ? name.substring(0, dash) : name;
+
+		String family = aliases.get(root);
+		return (family != null) ? family : root;
+	}
+}
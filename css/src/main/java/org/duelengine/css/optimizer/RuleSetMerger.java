@@ -0,0 +1,286 @@
+package org.duelengine.css.optimizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.duelengine.css.ast.AtRuleNode;
+import org.duelengine.css.ast.CommentNode;
+import org.duelengine.css.ast.ContainerNode;
+import org.duelengine.css.ast.CssNode;
+import org.duelengine.css.ast.DeclarationNode;
+import org.duelengine.css.ast.FunctionNode;
+import org.duelengine.css.ast.OperatorNode;
+import org.duelengine.css.ast.RuleSetNode;
+import org.duelengine.css.ast.SelectorNode;
+import org.duelengine.css.ast.StringNode;
+import org.duelengine.css.ast.StyleSheetNode;
+import org.duelengine.css.ast.ValueNode;
+import org.duelengine.css.parsing.CssGrammar;
+
+/**
+ * Merges rule-sets which share a selector list, or which share a declaration body
+ * by combining their selectors. A later rule-set is only moved up into an earlier one
+ * when no rule-set between them sets a property of the same family, so the cascade is
+ * unchanged. At-rules act as barriers. Runs in a single hashed pass per block.
+ * Holds no state so is safe to use concurrently.
+ */
+public class RuleSetMerger implements CssOptimizer {
+
+	private static final String KEYFRAMES = "keyframes";
+	private static final String NOT = "not";
+
+	// pseudo-classes and pseudo-elements from CSS 2.1 and Selectors Level 3
+	private static final Set<String> baselinePseudos = new HashSet<String>(Arrays.asList(
+		"link", "visited", "hover", "active", "focus", "lang", "first-child",
+		"before", "after", "first-line", "first-letter",
+		"root", "nth-child", "nth-last-child", "nth-of-type", "nth-last-of-type", "last-child",
+		"first-of-type", "last-of-type", "only-child", "only-of-type", "empty", "target",
+		"enabled", "disabled", "checked", NOT));
+
+	/**
+	 * Identifies a declaration body independent of its selectors
+	 */
+	private static class Body {
+		private final List<CssNode> children;
+		private final int hash;
+
+		Body(RuleSetNode ruleSet) {
+			children = new ArrayList<CssNode>(ruleSet.getChildren());
+			// rule-sets hash only their children
+			hash = ruleSet.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object arg) {
+			return (arg instanceof Body) && children.equals(((Body)arg).children);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	/**
+	 * A retained rule-set and its position in the cascade
+	 */
+	private static class Target {
+		private final RuleSetNode ruleSet;
+		private final int ordinal;
+		private List<SelectorNode> selectors;
+		private Body body;
+
+		Target(RuleSetNode ruleSet, int ordinal) {
+			this.ruleSet = ruleSet;
+			this.ordinal = ordinal;
+		}
+	}
+
+	/**
+	 * Lookups for a single block
+	 */
+	private static class Scope {
+		private final Map<List<SelectorNode>, Target> bySelectors = new HashMap<List<SelectorNode>, Target>();
+		private final Map<Body, Target> byBody = new HashMap<Body, Target>();
+		// ordinal of the last rule-set to set each property family
+		private final Map<String, Integer> lastSet = new HashMap<String, Integer>();
+
+		void clear() {
+			bySelectors.clear();
+			byBody.clear();
+			lastSet.clear();
+		}
+
+		void index(Target target) {
+			target.selectors = new ArrayList<SelectorNode>(target.ruleSet.getSelectors());
+			bySelectors.put(target.selectors, target);
+			target.body = new Body(target.ruleSet);
+			byBody.put(target.body, target);
+		}
+
+		void unindex(Target target) {
+			if (bySelectors.get(target.selectors) == target) {
+				bySelectors.remove(target.selectors);
+			}
+			if (byBody.get(target.body) == target) {
+				byBody.remove(target.body);
+			}
+		}
+
+		boolean canMove(Set<String> families, Target target) {
+			for (String family : families) {
+				Integer last = lastSet.get(family);
+				if (last != null && last.intValue() > target.ordinal) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		void set(Set<String> families, int ordinal) {
+			for (String family : families) {
+				Integer last = lastSet.get(family);
+				if (last == null || last.intValue() < ordinal) {
+					lastSet.put(family, ordinal);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void optimize(StyleSheetNode stylesheet) {
+		if (stylesheet == null) {
+			throw new NullPointerException("stylesheet");
+		}
+
+		merge(stylesheet);
+	}
+
+	private void merge(ContainerNode container) {
+		Scope scope = new Scope();
+		List<CssNode> kept = new ArrayList<CssNode>(container.childCount());
+		int ordinal = 0;
+
+		for (CssNode child : container.getChildren()) {
+			if (child instanceof CommentNode) {
+				kept.add(child);
+				continue;
+			}
+
+			if (!(child instanceof RuleSetNode)) {
+				// nested rules may match the same elements so nothing moves across
+				scope.clear();
+				if (child instanceof AtRuleNode) {
+					mergeAtRule((AtRuleNode)child);
+				}
+				kept.add(child);
+				continue;
+			}
+
+			RuleSetNode ruleSet = (RuleSetNode)child;
+			Set<String> families = getFamilies(ruleSet);
+
+			if (families.contains(PropertyFamilies.ALL)) {
+				scope.clear();
+
+			} else {
+				Target target = scope.bySelectors.get(new ArrayList<SelectorNode>(ruleSet.getSelectors()));
+				if (target != null && scope.canMove(families, target)) {
+					scope.unindex(target);
+					for (CssNode declaration : new ArrayList<CssNode>(ruleSet.getChildren())) {
+						target.ruleSet.appendChild(declaration);
+					}
+					scope.index(target);
+					scope.set(families, target.ordinal);
+					continue;
+				}
+
+				target = scope.byBody.get(new Body(ruleSet));
+				if (target != null && scope.canMove(families, target) &&
+					hasBaselineSelectors(ruleSet) && hasBaselineSelectors(target.ruleSet)) {
+
+					scope.unindex(target);
+					for (SelectorNode selector : ruleSet.getSelectors()) {
+						if (!target.ruleSet.getSelectors().contains(selector)) {
+							target.ruleSet.addSelector(selector);
+						}
+					}
+					scope.index(target);
+					continue;
+				}
+			}
+
+			Target target = new Target(ruleSet, ++ordinal);
+			scope.index(target);
+			scope.set(families, ordinal);
+			kept.add(ruleSet);
+		}
+
+		if (kept.size() < container.childCount()) {
+			List<CssNode> children = container.getChildren();
+			children.clear();
+			children.addAll(kept);
+		}
+	}
+
+	private void mergeAtRule(AtRuleNode atRule) {
+		if (atRule.getBlock() == null) {
+			return;
+		}
+
+		String keyword = atRule.getKeyword();
+		if (keyword != null && KEYFRAMES.equals(CssGrammar.removeVendorPrefix(keyword.toLowerCase(Locale.ROOT)))) {
+			// keyframe selectors are positions rather than element matches
+			return;
+		}
+
+		merge(atRule.getBlock());
+	}
+
+	private static Set<String> getFamilies(RuleSetNode ruleSet) {
+		Set<String> families = new HashSet<String>();
+		for (CssNode child : ruleSet.getChildren()) {
+			if (child instanceof DeclarationNode) {
+				families.add(PropertyFamilies.family(((DeclarationNode)child).getIdent()));
+			}
+		}
+		return families;
+	}
+
+	/**
+	 * Browsers drop a whole rule-set when any selector in its list is unsupported,
+	 * so only selectors limited to long-supported pseudos may be combined
+	 */
+	private static boolean hasBaselineSelectors(RuleSetNode ruleSet) {
+		for (SelectorNode selector : ruleSet.getSelectors()) {
+			if (!isBaseline(selector.getChildren())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isBaseline(List<CssNode> parts) {
+		// pseudos may be split from their colons, e.g. ":" ":" "-moz-selection"
+		boolean afterColon = false;
+		for (CssNode part : parts) {
+			if (part instanceof OperatorNode) {
+				afterColon = ":".equals(((OperatorNode)part).getValue());
+				continue;
+			}
+			if (!(part instanceof ValueNode) || part instanceof StringNode || ((ValueNode)part).getValue() == null) {
+				afterColon = false;
+				continue;
+			}
+
+			// every name following a colon is a pseudo, e.g. "a:hover" or "p::first-line"
+			String[] names = ((ValueNode)part).getValue().split(":", -1);
+			for (int i=afterColon ? 0 : 1; i<names.length; i++) {
+				if (!names[i].isEmpty() && !baselinePseudos.contains(names[i].toLowerCase(Locale.ROOT))) {
+					return false;
+				}
+			}
+
+			if (part instanceof FunctionNode) {
+				if (!afterColon && names.length < 2) {
+					// not a functional pseudo
+					return false;
+				}
+
+				// negation only takes a simple selector before Selectors Level 4
+				List<CssNode> args = ((FunctionNode)part).getContainer().getChildren();
+				if (NOT.equalsIgnoreCase(names[names.length-1]) && (args.size() != 1 || !isBaseline(args))) {
+					return false;
+				}
+			}
+			afterColon = false;
+		}
+		return true;
+	}
+}
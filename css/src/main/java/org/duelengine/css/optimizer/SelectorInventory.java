@@ -0,0 +1,238 @@
+package org.duelengine.css.optimizer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.duelengine.css.ast.CombinatorNode;
+import org.duelengine.css.ast.CombinatorType;
+import org.duelengine.css.ast.CssNode;
+import org.duelengine.css.ast.OperatorNode;
+import org.duelengine.css.ast.SelectorNode;
+import org.duelengine.css.ast.ValueNode;
+
+/**
+ * The class names, ids and element names present in a document, which selectors
+ * are checked against by the simple selectors of their rightmost compound.
+ * Keys are written in selector notation, e.g. ".nav", "#main" or "div".
+ */
+final class SelectorInventory {
+
+	private static final char CLASS_PREFIX = '.';
+	private static final char ID_PREFIX = '#';
+
+	private final Set<String> classNames;
+	private final Set<String> ids;
+	private final Set<String> elementNames;
+
+	/**
+	 * @param classNames class names in use
+	 * @param ids element ids in use
+	 * @param elementNames element names in use (case-insensitive)
+	 */
+	SelectorInventory(Collection<String> classNames, Collection<String> ids, Collection<String> elementNames) {
+		if (classNames == null) {
+			throw new NullPointerException("classNames");
+		}
+		if (ids == null) {
+			throw new NullPointerException("ids");
+		}
+		if (elementNames == null) {
+			throw new NullPointerException("elementNames");
+		}
+
+		this.classNames = new HashSet<String>(classNames);
+		this.ids = new HashSet<String>(ids);
+		this.elementNames = new HashSet<String>(elementNames.size());
+		for (String name : elementNames) {
+			this.elementNames.add(name.toLowerCase(Locale.ROOT));
+		}
+	}
+
+	/**
+	 * Reads an inventory written in selector notation, e.g. ".nav #main div",
+	 * separated by whitespace or commas
+	 * @param inventory
+	 * @return
+	 */
+	static SelectorInventory parse(CharSequence inventory) {
+		if (inventory == null) {
+			throw new NullPointerException("inventory");
+		}
+
+		List<String> classNames = new ArrayList<String>();
+		List<String> ids = new ArrayList<String>();
+		List<String> elementNames = new ArrayList<String>();
+
+		for (String name : inventory.toString().split("[\\s,]+")) {
+			if (name.length() < 1) {
+				continue;
+			}
+
+			switch (name.charAt(0)) {
+				case CLASS_PREFIX:
+					classNames.add(name.substring(1));
+					break;
+				case ID_PREFIX:
+					ids.add(name.substring(1));
+					break;
+				default:
+					elementNames.add(name);
+					break;
+			}
+		}
+
+		return new SelectorInventory(classNames, ids, elementNames);
+	}
+
+	/**
+	 * Determines if the class name, id or element name key is in use
+	 */
+	boolean contains(String key) {
+		switch (key.charAt(0)) {
+			case CLASS_PREFIX:
+				return classNames.contains(key.substring(1));
+			case ID_PREFIX:
+				return ids.contains(key.substring(1));
+			default:
+				return elementNames.contains(key);
+		}
+	}
+
+	/**
+	 * Determines if every class name, id and element name required by the selector is in use
+	 */
+	boolean mayMatch(SelectorNode selector) {
+		Set<String> keys = new HashSet<String>();
+		addKeys(selector, keys);
+
+		for (String key : keys) {
+			if (!contains(key)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Collects the class names, ids and element names required by the rightmost compound
+	 */
+	static void addKeys(SelectorNode selector, Set<String> keys) {
+		List<CssNode> parts = selector.getChildren();
+
+		// the rightmost compound runs back to the last combinator or descendant space
+		int start = parts.size();
+		while (start > 0) {
+			CssNode part = parts.get(start-1);
+			if (part instanceof CombinatorNode && ((CombinatorNode)part).getCombinator() != CombinatorType.SELF) {
+				break;
+			}
+			if (start < parts.size() && isWord(part) && isWord(parts.get(start))) {
+				// adjacent words are separated by a descendant space
+				break;
+			}
+			start--;
+		}
+
+		int brackets = 0;
+		for (int i=start, length=parts.size(); i<length; i++) {
+			CssNode part = parts.get(i);
+
+			if (part instanceof OperatorNode) {
+				String value = ((OperatorNode)part).getValue();
+				if ("[".equals(value)) {
+					brackets++;
+				} else if ("]".equals(value)) {
+					brackets--;
+				}
+
+			} else if (isWord(part) && brackets == 0) {
+				// only the leading word may begin with an element name,
+				// others continue a pseudo or follow a function
+				addKeys(((ValueNode)part).getValue(), (i == start), keys);
+			}
+		}
+	}
+
+	private static void addKeys(String value, boolean allowElement, Set<String> keys) {
+		if (value == null || value.indexOf('@') >= 0 || value.indexOf('&') >= 0) {
+			// LESS references are not yet resolved
+			return;
+		}
+
+		int length = value.length();
+		int i = 0;
+		char kind = allowElement ? 0 : ':';
+
+		while (i < length) {
+			StringBuilder name = new StringBuilder();
+			for (; i<length; i++) {
+				char ch = value.charAt(i);
+				if (ch == CLASS_PREFIX || ch == ID_PREFIX || ch == ':' || ch == '[') {
+					break;
+				}
+				if (ch == '\\' && i+1 < length) {
+					i = unescape(value, i+1, name)-1;
+					continue;
+				}
+				name.append(ch);
+			}
+
+			if (name.length() > 0) {
+				switch (kind) {
+					case CLASS_PREFIX:
+					case ID_PREFIX:
+						keys.add(kind+name.toString());
+						break;
+					case 0:
+						String element = name.toString();
+						// universal or namespaced
+						if (!"*".equals(element) && element.indexOf('|') < 0) {
+							keys.add(element.toLowerCase(Locale.ROOT));
+						}
+						break;
+				}
+			}
+
+			if (i < length) {
+				kind = value.charAt(i++);
+				if (kind == '[') {
+					// attributes never cause removal
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Decodes the escape sequence starting after the backslash
+	 * @return the index following the escape sequence
+	 */
+	private static int unescape(String value, int i, StringBuilder name) {
+		int length = value.length();
+		int end = i;
+		while (end < length && end < i+6 && Character.digit(value.charAt(end), 16) >= 0) {
+			end++;
+		}
+
+		if (end == i) {
+			name.append(value.charAt(i));
+			return i+1;
+		}
+
+		int codePoint = Integer.parseInt(value.substring(i, end), 16);
+		name.appendCodePoint((codePoint > 0 && codePoint <= Character.MAX_CODE_POINT) ? codePoint : 0xFFFD);
+		if (end < length && Character.isWhitespace(value.charAt(end))) {
+			// whitespace terminating a hex escape
+			end++;
+		}
+		return end;
+	}
+
+	private static boolean isWord(CssNode part) {
+		return (part instanceof ValueNode) && !(part instanceof OperatorNode) && !(part instanceof CombinatorNode);
+	}
+}
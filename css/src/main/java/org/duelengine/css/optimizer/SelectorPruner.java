@@ -0,0 +1,152 @@
+package org.duelengine.css.optimizer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.duelengine.css.ast.AtRuleNode;
+import org.duelengine.css.ast.BlockNode;
+import org.duelengine.css.ast.ContainerNode;
+import org.duelengine.css.ast.CssNode;
+import org.duelengine.css.ast.RuleSetNode;
+import org.duelengine.css.ast.SelectorNode;
+import org.duelengine.css.ast.StyleSheetNode;
+import org.duelengine.css.parsing.CssGrammar;
+
+/**
+ * Removes selectors which cannot match any element given an inventory of the class names,
+ * ids and element names in use, and then any rule-sets left without selectors. Selectors are
+ * indexed by the simple selectors of their rightmost compound so each distinct name is looked
+ * up once. Pseudo-classes, attributes and anything not understood never cause removal.
+ * Holds no mutable state so is safe to use concurrently.
+ */
+public class SelectorPruner implements CssOptimizer {
+
+	private static final String KEYFRAMES = "keyframes";
+
+	private final SelectorInventory inventory;
+
+	/**
+	 * @param classNames class names in use
+	 * @param ids element ids in use
+	 * @param elementNames element names in use (case-insensitive)
+	 */
+	public SelectorPruner(Collection<String> classNames, Collection<String> ids, Collection<String> elementNames) {
+		this(new SelectorInventory(classNames, ids, elementNames));
+	}
+
+	private SelectorPruner(SelectorInventory inventory) {
+		this.inventory = inventory;
+	}
+
+	/**
+	 * Reads an inventory written in selector notation, e.g. ".nav #main div",
+	 * separated by whitespace or commas
+	 * @param inventory
+	 * @return
+	 */
+	public static SelectorPruner parse(CharSequence inventory) {
+		return new SelectorPruner(SelectorInventory.parse(inventory));
+	}
+
+	@Override
+	public void optimize(StyleSheetNode stylesheet) {
+		if (stylesheet == null) {
+			throw new NullPointerException("stylesheet");
+		}
+
+		// inverted index of simple selector => every selector requiring it
+		Map<String, List<SelectorNode>> index = new HashMap<String, List<SelectorNode>>();
+		buildIndex(stylesheet, index);
+
+		Set<SelectorNode> unused = Collections.newSetFromMap(new IdentityHashMap<SelectorNode, Boolean>());
+		for (Map.Entry<String, List<SelectorNode>> entry : index.entrySet()) {
+			if (!inventory.contains(entry.getKey())) {
+				unused.addAll(entry.getValue());
+			}
+		}
+
+		if (!unused.isEmpty()) {
+			prune(stylesheet, unused);
+		}
+	}
+
+	private static void buildIndex(ContainerNode container, Map<String, List<SelectorNode>> index) {
+		Set<String> keys = new HashSet<String>();
+
+		for (CssNode child : container.getChildren()) {
+			if (child instanceof RuleSetNode) {
+				for (SelectorNode selector : ((RuleSetNode)child).getSelectors()) {
+					keys.clear();
+					SelectorInventory.addKeys(selector, keys);
+
+					for (String key : keys) {
+						List<SelectorNode> selectors = index.get(key);
+						if (selectors == null) {
+							selectors = new ArrayList<SelectorNode>();
+							index.put(key, selectors);
+						}
+						selectors.add(selector);
+					}
+				}
+
+			} else if (child instanceof AtRuleNode && hasRuleSets((AtRuleNode)child)) {
+				buildIndex(((AtRuleNode)child).getBlock(), index);
+			}
+		}
+	}
+
+	private static void prune(ContainerNode container, Set<SelectorNode> unused) {
+		Iterator<CssNode> children = container.getChildren().iterator();
+		while (children.hasNext()) {
+			CssNode child = children.next();
+
+			if (child instanceof RuleSetNode) {
+				Collection<SelectorNode> selectors = ((RuleSetNode)child).getSelectors();
+				Iterator<SelectorNode> it = selectors.iterator();
+				while (it.hasNext()) {
+					if (unused.contains(it.next())) {
+						it.remove();
+					}
+				}
+
+				if (selectors.isEmpty()) {
+					children.remove();
+				}
+
+			} else if (child instanceof AtRuleNode && hasRuleSets((AtRuleNode)child)) {
+				BlockNode block = ((AtRuleNode)child).getBlock();
+				if (!block.hasChildren()) {
+					continue;
+				}
+
+				prune(block, unused);
+				if (!block.hasChildren()) {
+					// e.g. @media block left empty
+					children.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Determines if the at-rule block holds rule-sets which match elements
+	 */
+	private static boolean hasRuleSets(AtRuleNode atRule) {
+		if (atRule.getBlock() == null) {
+			return false;
+		}
+
+		String keyword = atRule.getKeyword();
+		// keyframe selectors are positions rather than element matches
+		return keyword == null || !KEYFRAMES.equals(CssGrammar.removeVendorPrefix(keyword.toLowerCase(Locale.ROOT)));
+	}
+}
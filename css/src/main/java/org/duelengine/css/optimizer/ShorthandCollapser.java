@@ -0,0 +1,418 @@
+package org.duelengine.css.optimizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.duelengine.css.ast.ColorNode;
+import org.duelengine.css.ast.ContainerValueNode;
+import org.duelengine.css.ast.CssNode;
+import org.duelengine.css.ast.CssVisitor;
+import org.duelengine.css.ast.DeclarationNode;
+import org.duelengine.css.ast.FunctionNode;
+import org.duelengine.css.ast.LessVariableReferenceNode;
+import org.duelengine.css.ast.OperatorNode;
+import org.duelengine.css.ast.RuleSetNode;
+import org.duelengine.css.ast.StyleSheetNode;
+import org.duelengine.css.ast.ValueNode;
+import org.duelengine.css.parsing.CssGrammar;
+
+/**
+ * Collapses longhand declarations within a rule-set into their shorthand, e.g.
+ * "margin-top:0;margin-right:1px;margin-bottom:0;margin-left:1px" becomes "margin:0 1px".
+ * A shorthand resets every one of its longhands so a rule-set is only collapsed when it
+ * sets them all, each exactly once with the same importance, and nothing else which
+ * overrides them appears in between. Shorthands such as font which reset further properties
+ * are also left alone when one of those is declared earlier. Holds no state so is safe to use concurrently.
+ */
+public class ShorthandCollapser implements CssOptimizer {
+
+	// values which apply to a whole property so may not be combined
+	private static final Set<String> wideKeywords = new HashSet<String>(Arrays.asList(
+		"inherit", "initial", "unset", "revert"));
+
+	private static final String[] SIDES = { "top", "right", "bottom", "left" };
+
+	/**
+	 * Combines the values of a complete set of longhands
+	 */
+	private static abstract class Shorthand {
+		final String name;
+		final String[] longhands;
+
+		Shorthand(String name, String... longhands) {
+			this.name = name;
+			this.longhands = longhands;
+		}
+
+		/**
+		 * @param values the values of each longhand in order
+		 * @return the shorthand value or null if the values cannot be combined
+		 */
+		abstract List<ValueNode> combine(List<List<ValueNode>> values);
+
+		/**
+		 * Determines if the shorthand also resets properties which are not among its longhands,
+		 * e.g. font resets font-kerning
+		 */
+		boolean resetsOthers() {
+			return true;
+		}
+	}
+
+	/**
+	 * Four sides in top, right, bottom, left order with repeated sides omitted
+	 */
+	private static class BoxShorthand extends Shorthand {
+		BoxShorthand(String name, String prefix, String suffix) {
+			super(name, prefix+SIDES[0]+suffix, prefix+SIDES[1]+suffix, prefix+SIDES[2]+suffix, prefix+SIDES[3]+suffix);
+		}
+
+		@Override
+		boolean resetsOthers() {
+			return false;
+		}
+
+		@Override
+		List<ValueNode> combine(List<List<ValueNode>> values) {
+			ValueNode[] sides = new ValueNode[4];
+			for (int i=0; i<4; i++) {
+				List<ValueNode> side = values.get(i);
+				if (side.size() != 1 || side.get(0) instanceof OperatorNode) {
+					return null;
+				}
+				sides[i] = side.get(0);
+			}
+
+			int count = 4;
+			if (same(sides[3], sides[1])) {
+				count--;
+				if (same(sides[2], sides[0])) {
+					count--;
+					if (same(sides[1], sides[0])) {
+						count--;
+					}
+				}
+			}
+
+			List<ValueNode> result = new ArrayList<ValueNode>(count);
+			for (int i=0; i<count; i++) {
+				result.add(values.get(i).get(0));
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Concatenates longhand values in shorthand order, with an optional '/' separator
+	 */
+	private static class SequenceShorthand extends Shorthand {
+		private final int slash;
+
+		/**
+		 * @param slash index of the longhand preceded by a '/'
+		 */
+		SequenceShorthand(String name, int slash, String... longhands) {
+			super(name, longhands);
+			this.slash = slash;
+		}
+
+		@Override
+		List<ValueNode> combine(List<List<ValueNode>> values) {
+			List<ValueNode> result = new ArrayList<ValueNode>();
+			for (int i=0; i<values.size(); i++) {
+				List<ValueNode> value = values.get(i);
+				if (value.isEmpty() || (hasOperator(value) && i < values.size()-1)) {
+					// only the last longhand may be a list, e.g. font-family
+					return null;
+				}
+				if (!accepts(i, value)) {
+					return null;
+				}
+				if (i == slash) {
+					result.add(new OperatorNode("/"));
+				}
+				result.addAll(value);
+			}
+			return result;
+		}
+
+		/**
+		 * Checks that the longhand value is allowed within the shorthand
+		 */
+		boolean accepts(int index, List<ValueNode> value) {
+			return true;
+		}
+	}
+
+	private static final Shorthand[] shorthands = {
+		new BoxShorthand("margin", "margin-", ""),
+		new BoxShorthand("padding", "padding-", ""),
+		new BoxShorthand("border-width", "border-", "-width"),
+		new BoxShorthand("border-style", "border-", "-style"),
+		new BoxShorthand("border-color", "border-", "-color"),
+		// single layer only, the color is last
+		new SequenceShorthand("background", 2,
+			"background-image", "background-position", "background-size", "background-repeat",
+			"background-attachment", "background-origin", "background-clip", "background-color") {
+
+			@Override
+			boolean accepts(int index, List<ValueNode> value) {
+				// clipping to text is only valid as a longhand
+				return (index != 6) || !isKeyword(value, "text");
+			}
+		},
+		new SequenceShorthand("font", 5,
+			"font-style", "font-variant", "font-weight", "font-stretch", "font-size", "line-height", "font-family") {
+
+			@Override
+			boolean accepts(int index, List<ValueNode> value) {
+				switch (index) {
+					case 1:
+						// only CSS2 variants are allowed
+						return isKeyword(value, "normal") || isKeyword(value, "small-caps");
+					case 3:
+						// percentages are only valid as a longhand
+						return (value.size() == 1) && (value.get(0).getClass() == ValueNode.class);
+					default:
+						return true;
+				}
+			}
+		}
+	};
+
+	// longhand name to its shorthand
+	private static final Map<String, Shorthand> byLonghand = new HashMap<String, Shorthand>();
+	static {
+		for (Shorthand shorthand : shorthands) {
+			for (String longhand : shorthand.longhands) {
+				byLonghand.put(longhand, shorthand);
+			}
+		}
+	}
+
+	private final CssVisitor<Void, Void> walker = new BlockWalker() {
+		@Override
+		public Void visitRuleSet(RuleSetNode node, Void context) {
+			collapse(node);
+			return null;
+		}
+	};
+
+	@Override
+	public void optimize(StyleSheetNode stylesheet) {
+		if (stylesheet == null) {
+			throw new NullPointerException("stylesheet");
+		}
+
+		stylesheet.accept(walker, null);
+	}
+
+	/**
+	 * Single sweep recording each longhand, then each complete shorthand is checked
+	 */
+	private void collapse(RuleSetNode ruleSet) {
+		List<CssNode> children = ruleSet.getChildren();
+
+		Map<String, Integer> positions = null;
+		Set<String> repeated = null;
+		for (int i=0, length=children.size(); i<length; i++) {
+			CssNode child = children.get(i);
+			if (!(child instanceof DeclarationNode)) {
+				continue;
+			}
+
+			String ident = ((DeclarationNode)child).getIdent();
+			String property = (ident != null) ? ident.toLowerCase(Locale.ROOT) : null;
+			if (property == null || !byLonghand.containsKey(property)) {
+				continue;
+			}
+
+			if (positions == null) {
+				positions = new HashMap<String, Integer>();
+				repeated = new HashSet<String>();
+			}
+			if (positions.put(property, i) != null) {
+				// fallbacks are left as written
+				repeated.add(property);
+			}
+		}
+
+		if (positions == null) {
+			return;
+		}
+
+		// replacements keyed by position of the last longhand
+		Map<Integer, DeclarationNode> replacements = new HashMap<Integer, DeclarationNode>();
+		Set<Integer> removed = new HashSet<Integer>();
+		for (Shorthand shorthand : shorthands) {
+			int first = Integer.MAX_VALUE, last = -1;
+			boolean complete = true;
+			for (String longhand : shorthand.longhands) {
+				Integer position = positions.get(longhand);
+				if (position == null || repeated.contains(longhand)) {
+					complete = false;
+					break;
+				}
+				first = Math.min(first, position);
+				last = Math.max(last, position);
+			}
+			if (!complete) {
+				continue;
+			}
+
+			DeclarationNode declaration = combine(shorthand, children, positions, first, last);
+			if (declaration == null) {
+				continue;
+			}
+
+			for (String longhand : shorthand.longhands) {
+				removed.add(positions.get(longhand));
+			}
+			replacements.put(last, declaration);
+		}
+
+		if (replacements.isEmpty()) {
+			return;
+		}
+
+		List<CssNode> kept = new ArrayList<CssNode>(children.size());
+		for (int i=0, length=children.size(); i<length; i++) {
+			DeclarationNode replacement = replacements.get(i);
+			if (replacement != null) {
+				kept.add(replacement);
+			} else if (!removed.contains(i)) {
+				kept.add(children.get(i));
+			}
+		}
+
+		children.clear();
+		for (CssNode child : kept) {
+			ruleSet.appendChild(child);
+		}
+	}
+
+	private static DeclarationNode combine(Shorthand shorthand, List<CssNode> children, Map<String, Integer> positions, int first, int last) {
+		// nothing between may override the longhands, nor anything before
+		// which the shorthand would also reset
+		Set<String> members = new HashSet<String>(Arrays.asList(shorthand.longhands));
+		String family = PropertyFamilies.family(shorthand.longhands[0]);
+		for (int i=shorthand.resetsOthers() ? 0 : first+1; i<last; i++) {
+			CssNode child = children.get(i);
+			if (child instanceof DeclarationNode) {
+				String ident = ((DeclarationNode)child).getIdent();
+				if (ident != null && !members.contains(ident.toLowerCase(Locale.ROOT)) && family.equals(PropertyFamilies.family(ident))) {
+					return null;
+				}
+			}
+		}
+
+		Boolean important = null;
+		List<List<ValueNode>> values = new ArrayList<List<ValueNode>>(shorthand.longhands.length);
+		for (String longhand : shorthand.longhands) {
+			DeclarationNode declaration = (DeclarationNode)children.get(positions.get(longhand));
+			if (important == null) {
+				important = declaration.isImportant();
+			} else if (important.booleanValue() != declaration.isImportant()) {
+				return null;
+			}
+
+			List<ValueNode> value = getValues(declaration);
+			if (value == null) {
+				return null;
+			}
+			values.add(value);
+		}
+
+		List<ValueNode> combined = shorthand.combine(values);
+		if (combined == null) {
+			return null;
+		}
+
+		DeclarationNode declaration = (DeclarationNode)children.get(last);
+		DeclarationNode result = new DeclarationNode(shorthand.name, declaration.getIndex(), declaration.getLine(), declaration.getColumn());
+		for (ValueNode value : combined) {
+			result.appendChild(value);
+		}
+		result.setImportant(important.booleanValue());
+		return result;
+	}
+
+	/**
+	 * Gets the values of the declaration if they may be combined
+	 */
+	private static List<ValueNode> getValues(DeclarationNode declaration) {
+		List<ValueNode> values = new ArrayList<ValueNode>(declaration.childCount());
+		for (CssNode child : declaration.getChildren()) {
+			if (!(child instanceof ValueNode) || child instanceof LessVariableReferenceNode) {
+				return null;
+			}
+
+			ValueNode value = (ValueNode)child;
+			if (value instanceof FunctionNode) {
+				// substitution happens after the shorthand is expanded
+				String name = value.getValue().toLowerCase(Locale.ROOT);
+				if ("var".equals(name) || "env".equals(name)) {
+					return null;
+				}
+
+			} else if (!(value instanceof OperatorNode) && value.getClass() == ValueNode.class) {
+				String keyword = value.getValue();
+				if (keyword == null || wideKeywords.contains(keyword.toLowerCase(Locale.ROOT)) ||
+					CssGrammar.vendorPrefixLength(keyword, 0, keyword.length()) > 0) {
+					return null;
+				}
+			}
+			values.add(value);
+		}
+		return values;
+	}
+
+	/**
+	 * Compares values as rendered, e.g. 0px and 0
+	 */
+	private static boolean same(ValueNode a, ValueNode b) {
+		if (a instanceof ContainerValueNode || b instanceof ContainerValueNode) {
+			return a.equals(b);
+		}
+		if (isRGB(a) && isRGB(b)) {
+			// e.g. red, #f00 and #FF0000
+			ColorNode x = (ColorNode)a, y = (ColorNode)b;
+			return x.getRedChannel() == y.getRedChannel() &&
+				x.getGreenChannel() == y.getGreenChannel() &&
+				x.getBlueChannel() == y.getBlueChannel();
+		}
+		return a.getValue(true).equals(b.getValue(true));
+	}
+
+	private static boolean isRGB(ValueNode value) {
+		if (!(value instanceof ColorNode) || value.getValue() == null) {
+			return false;
+		}
+
+		String color = value.getValue();
+		if (!color.startsWith("#")) {
+			color = CssGrammar.decodeColor(color);
+		}
+		return (color != null) && (color.length() == 4 || color.length() == 7) && color.startsWith("#");
+	}
+
+	private static boolean isKeyword(List<ValueNode> value, String keyword) {
+		return (value.size() == 1) && (value.get(0).getClass() == ValueNode.class) &&
+			keyword.equalsIgnoreCase(value.get(0).getValue());
+	}
+
+	private static boolean hasOperator(List<ValueNode> values) {
+		for (ValueNode value : values) {
+			if (value instanceof OperatorNode) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -31,36 +31,41 @@ final class CharUtility {
 	}
 
 	public static boolean isOperator(String value) {
-		if (value != null) {
-			switch (value.length()) {
-				case 1:
-					switch (value.charAt(0)) {
-						case CssGrammar.OP_PAIR_DELIM:
-						case CssGrammar.OP_ITEM_DELIM:
-						case CssGrammar.OP_CHILD:
-						case CssGrammar.OP_ADJACENT:
-						case CssGrammar.OP_SIBLING:
-						case CssGrammar.OP_MATCH:
-						case CssGrammar.OP_PAREN_BEGIN:
-						case CssGrammar.OP_PAREN_END:
-						case CssGrammar.OP_ATTR_BEGIN:
-						case CssGrammar.OP_ATTR_END:
-						case CssGrammar.OP_NAMESPACE_DELIM:
-						case CssGrammar.OP_IMPORTANT_BEGIN:
-						case '/':
-						case '-':
-							return true;
-					}
-					break;
-				case 2:
-					if ("~=".equals(value) ||
-						"|=".equals(value) ||
-						"^=".equals(value) ||
-						"$=".equals(value)) {
+		return (value != null) && isOperator(value, 0, value.length());
+	}
+
+	public static boolean isOperator(CharSequence text, int offset, int length) {
+		switch (length) {
+			case 1:
+				switch (text.charAt(offset)) {
+					case CssGrammar.OP_PAIR_DELIM:
+					case CssGrammar.OP_ITEM_DELIM:
+					case CssGrammar.OP_CHILD:
+					case CssGrammar.OP_ADJACENT:
+					case CssGrammar.OP_SIBLING:
+					case CssGrammar.OP_MATCH:
+					case CssGrammar.OP_PAREN_BEGIN:
+					case CssGrammar.OP_PAREN_END:
+					case CssGrammar.OP_ATTR_BEGIN:
+					case CssGrammar.OP_ATTR_END:
+					case CssGrammar.OP_NAMESPACE_DELIM:
+					case CssGrammar.OP_IMPORTANT_BEGIN:
+					case '/':
+					case '-':
 						return true;
+				}
+				break;
+			case 2:
+				if (text.charAt(offset+1) == CssGrammar.OP_MATCH) {
+					switch (text.charAt(offset)) {
+						case '~':
+						case '|':
+						case '^':
+						case '$':
+							return true;
 					}
-					break;
-			}
+				}
+				break;
 		}
 
 		return false;
@@ -8,11 +8,40 @@ public final class CssGrammar {
 
 	private static final String KEYWORDS_RESOURCE = "org.duelengine.css.parsing.CssKeywords"; //CssKeywords.properties
 	private static final String COLOR_RESOURCE = "org.duelengine.css.parsing.CssColors"; //CssColors.properties
-	private static ResourceBundle colors;
-	private static Map<String, Boolean> pseudo;
-	private static Map<String, Boolean> atRules;
-	private static Map<String, Boolean> vendorPrefixes;
-	private static boolean inited;
+
+	// built once during class initialization so are safely published to all threads
+	private static final KeywordTable pseudo;
+	private static final KeywordTable atRules;
+	private static final KeywordTable vendorPrefixes;
+	private static final KeywordTable colors;
+	static {
+		// definitions maintained in CssKeywords.properties
+		ResourceBundle config = ResourceBundle.getBundle(KEYWORDS_RESOURCE);
+
+		// CSS3 pseudo-class and pseudo-element keywords
+		Map<String, String> map = new HashMap<String, String>();
+		addKeywords(map, config, "pseudoClasses");
+		addKeywords(map, config, "pseudoElements");
+		pseudo = new KeywordTable(map);
+
+		// CSS3 at-rule keywords
+		map = new HashMap<String, String>();
+		addKeywords(map, config, "atRules");
+		atRules = new KeywordTable(map);
+
+		// CSS3 vendor prefixes
+		map = new HashMap<String, String>();
+		addKeywords(map, config, "vendorPrefixes");
+		vendorPrefixes = new KeywordTable(map);
+
+		// CSS3 color keywords
+		ResourceBundle colorConfig = ResourceBundle.getBundle(COLOR_RESOURCE);
+		map = new HashMap<String, String>();
+		for (String key : colorConfig.keySet()) {
+			map.put(key, colorConfig.getString(key));
+		}
+		colors = new KeywordTable(map);
+	}
 
 	// static class
 	private CssGrammar() {}
@@ -69,15 +98,22 @@ public final class CssGrammar {
 	 * @return
 	 */
 	static boolean isPseudoKeyword(String keyword) {
-		if (keyword == null || keyword.isEmpty()) {
+		if (keyword == null) {
 			return false;
 		}
 
-		if (!inited) {
-			initLookups();
-		}
+		return isPseudoKeyword(keyword, 0, keyword.length());
+	}
 
-		return pseudo.containsKey(keyword);
+	/**
+	 * Checks if a range of text is a CSS3 pseudo-class or pseudo-element keyword
+	 * @param text
+	 * @param offset
+	 * @param length
+	 * @return
+	 */
+	public static boolean isPseudoKeyword(CharSequence text, int offset, int length) {
+		return pseudo.contains(text, offset, offset+length);
 	}
 
 	/**
@@ -86,14 +122,24 @@ public final class CssGrammar {
 	 * @return
 	 */
 	public static boolean isAtRuleKeyword(String keyword) {
-		if (keyword == null || keyword.isEmpty()) {
+		if (keyword == null) {
 			return false;
 		}
 
-		// filter vendor lookups
-		keyword = removeVendorPrefix(keyword);
+		return isAtRuleKeyword(keyword, 0, keyword.length());
+	}
 
-		return atRules.containsKey(keyword);
+	/**
+	 * Checks if a range of text is a CSS3 at-rule keyword, ignoring any vendor prefix
+	 * @param text
+	 * @param offset
+	 * @param length
+	 * @return
+	 */
+	public static boolean isAtRuleKeyword(CharSequence text, int offset, int length) {
+		// filter vendor lookups
+		int prefix = vendorPrefixLength(text, offset, length);
+		return atRules.contains(text, offset+prefix, offset+length);
 	}
 
 	/**
@@ -102,23 +148,33 @@ public final class CssGrammar {
 	 * @return
 	 */
 	public static String removeVendorPrefix(String keyword) {
-		if (keyword == null || keyword.isEmpty()) {
+		if (keyword == null) {
 			return keyword;
 		}
 
-		if (!inited) {
-			initLookups();
+		int index = vendorPrefixLength(keyword, 0, keyword.length());
+		return (index > 0) ? keyword.substring(index) : keyword;
+	}
+
+	/**
+	 * Measures any recognized vendor prefix at the start of a range of text
+	 * @param text
+	 * @param offset
+	 * @param length
+	 * @return length of the prefix including trailing '-', or zero
+	 */
+	public static int vendorPrefixLength(CharSequence text, int offset, int length) {
+		if (length < 1 || text.charAt(offset) != '-') {
+			return 0;
 		}
 
-		if (keyword.charAt(0) == '-') {
-			int index = keyword.indexOf('-', 1)+1;
-			String prefix = keyword.substring(0, index);
-			if (vendorPrefixes.containsKey(prefix)) {
-				keyword = keyword.substring(index);
+		int end = offset+length;
+		for (int i=offset+1; i<end; i++) {
+			if (text.charAt(i) == '-') {
+				return vendorPrefixes.contains(text, offset, i+1) ? i+1-offset : 0;
 			}
 		}
-
-		return keyword;
+		return 0;
 	}
 	
 	/**
@@ -128,62 +184,31 @@ public final class CssGrammar {
 	 */
 	public static String decodeColor(String keyword) {
 
-		if (keyword == null || keyword.isEmpty()) {
+		if (keyword == null) {
 			return null;
 		}
 
-		if (colors == null) {
-			// CSS3 color keywords
-			colors = ResourceBundle.getBundle(COLOR_RESOURCE);
-		}
-
-		if (colors.containsKey(keyword)) {
-			return colors.getString(keyword);
-		}
-
-		return null;
+		return decodeColor(keyword, 0, keyword.length());
 	}
 
-	private static void initLookups() {
-
-		String[] items;
-		Map<String, Boolean> map;
-
-		// definitions maintained in CssKeywords.properties
-		ResourceBundle config = ResourceBundle.getBundle(KEYWORDS_RESOURCE);
-
-		// CSS3 pseudo-class keywords
-		items = (config != null) && config.containsKey("pseudoClasses") ?
-				config.getString("pseudoClasses").split(",") : new String[0];
-		map = new HashMap<String, Boolean>(items.length);
-		for (String value : items) {
-			map.put(value, true);
-		}
-
-		// CSS3 pseudo-element keywords
-		items = (config != null) && config.containsKey("pseudoElements") ?
-				config.getString("pseudoElements").split(",") : new String[0];
-		for (String value : items) {
-			map.put(value, true);
-		}
-		pseudo = map;
+	/**
+	 * Decodes a range of text as a CSS3 color keyword
+	 * @param text
+	 * @param offset
+	 * @param length
+	 * @return the hex value or null if not a color keyword
+	 */
+	public static String decodeColor(CharSequence text, int offset, int length) {
+		return colors.get(text, offset, offset+length);
+	}
 
-		// CSS3 at-rule keywords
-		items = (config != null) && config.containsKey("atRules") ?
-				config.getString("atRules").split(",") : new String[0];
-		map = new HashMap<String, Boolean>(items.length);
-		for (String value : items) {
-			map.put(value, true);
+	private static void addKeywords(Map<String, String> map, ResourceBundle config, String key) {
+		if (config == null || !config.containsKey(key)) {
+			return;
 		}
-		atRules = map;
 
-		// CSS3 vendor prefixes
-		items = (config != null) && config.containsKey("vendorPrefixes") ?
-				config.getString("vendorPrefixes").split(",") : new String[0];
-		map = new HashMap<String, Boolean>(items.length);
-		for (String value : items) {
-			map.put(value, true);
+		for (String value : config.getString(key).split(",")) {
+			map.put(value, null);
 		}
-		vendorPrefixes = map;
 	}
 }
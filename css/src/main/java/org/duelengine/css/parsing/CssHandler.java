@@ -0,0 +1,60 @@
+package org.duelengine.css.parsing;
+
+import java.io.IOException;
+
+import org.duelengine.css.ast.AtRuleNode;
+import org.duelengine.css.ast.CommentNode;
+import org.duelengine.css.ast.DeclarationNode;
+import org.duelengine.css.ast.RuleSetNode;
+import org.duelengine.css.ast.SelectorNode;
+
+/**
+ * Receives statements as they are parsed rather than as a complete AST.
+ * Nodes are detached from the document once reported so should not be
+ * expected to retain children which have already been reported.
+ */
+public interface CssHandler {
+
+	/**
+	 * Reports an at-rule once its header has been parsed.
+	 * If the at-rule has a block, its contents follow and are terminated by endBlock.
+	 * @param atRule
+	 * @throws IOException
+	 */
+	void startAtRule(AtRuleNode atRule) throws IOException;
+
+	/**
+	 * Reports the start of a rule-set, followed by its selectors,
+	 * then its contents, and terminated by endBlock.
+	 * @param ruleSet
+	 * @throws IOException
+	 */
+	void startRuleSet(RuleSetNode ruleSet) throws IOException;
+
+	/**
+	 * Reports a selector of the current rule-set
+	 * @param selector
+	 * @throws IOException
+	 */
+	void selector(SelectorNode selector) throws IOException;
+
+	/**
+	 * Reports a complete declaration within the current block
+	 * @param declaration
+	 * @throws IOException
+	 */
+	void declaration(DeclarationNode declaration) throws IOException;
+
+	/**
+	 * Reports a comment within the current block or stylesheet
+	 * @param comment
+	 * @throws IOException
+	 */
+	void comment(CommentNode comment) throws IOException;
+
+	/**
+	 * Reports the end of the current at-rule or rule-set block
+	 * @throws IOException
+	 */
+	void endBlock() throws IOException;
+}
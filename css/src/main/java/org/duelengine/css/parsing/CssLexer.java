@@ -3,7 +3,7 @@ package org.duelengine.css.parsing;
 import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.Reader;
-import java.io.StringReader;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
 import java.util.Iterator;
 
@@ -19,7 +19,16 @@ public class CssLexer implements Iterator<CssToken> {
 
 	private final Syntax syntax;
 	private final LineNumberReader reader;
+	private final char[] chars;
+	private final int chars_start;
+	private final int chars_end;
+	private final LineIndex lines;
+	private int chars_pos;
+	private int mark_pos;
 	private final StringBuilder buffer = new StringBuilder(512);
+	// current token is held as fields and only materialized as a CssToken on demand
+	private CssTokenType tokenType = CssTokenType.VALUE;
+	private String tokenValue;
 	private CssToken token = CssToken.start;
 	private boolean hasToken;
 	private int ch;
@@ -40,16 +49,45 @@ public class CssLexer implements Iterator<CssToken> {
 	 * @param text
 	 */
 	public CssLexer(String text) {
-		this(new StringReader(text), null);
+		this(text, null);
 	}
 
 	/**
 	 * Ctor
 	 * @param text
-	 * @param allowLineComments
+	 * @param lexSyntax
 	 */
 	public CssLexer(String text, Syntax lexSyntax) {
-		this(new StringReader(text), lexSyntax);
+		this(null, text.toCharArray(), 0, text.length(), lexSyntax);
+	}
+
+	/**
+	 * Ctor
+	 * @param text
+	 */
+	public CssLexer(CharSequence text) {
+		this(text, null);
+	}
+
+	/**
+	 * Ctor
+	 * @param text
+	 * @param lexSyntax
+	 */
+	public CssLexer(CharSequence text, Syntax lexSyntax) {
+		this(null, toCharArray(text), offsetOf(text), offsetOf(text)+text.length(), lexSyntax);
+	}
+
+	/**
+	 * Ctor
+	 * @param text
+	 * @param offset
+	 * @param length
+	 * @param lexSyntax
+	 */
+	public CssLexer(char[] text, int offset, int length, Syntax lexSyntax) {
+		// range is checked before the first char is primed
+		this(null, text, checkRange(text, offset, length), offset+length, lexSyntax);
 	}
 
 	/**
@@ -63,14 +101,35 @@ public class CssLexer implements Iterator<CssToken> {
 	/**
 	 * Ctor
 	 * @param source
-	 * @param allowLineComments
+	 * @param lexSyntax
 	 */
 	public CssLexer(Reader source, Syntax lexSyntax) {
+		this((source instanceof LineNumberReader) ?
+				(LineNumberReader)source :
+				new LineNumberReader(source),
+			null, 0, 0, lexSyntax);
+	}
+
+	private static int checkRange(char[] text, int offset, int length) {
+		if (offset < 0 || length < 0 || offset+length > text.length) {
+			throw new IndexOutOfBoundsException("offset: "+offset+", length: "+length);
+		}
+		return offset;
+	}
+
+	private CssLexer(LineNumberReader source, char[] text, int start, int end, Syntax lexSyntax) {
 		syntax = (lexSyntax == null) ? Syntax.CSS : lexSyntax;
 
-		reader = (source instanceof LineNumberReader) ?
-			(LineNumberReader)source :
-			new LineNumberReader(source);
+		reader = source;
+		chars = text;
+		chars_start = chars_pos = start;
+		chars_end = end;
+		lines = (text != null) ? new LineIndex(text, start, end) : null;
+
+		if (reader == null) {
+			// lines are tracked directly when scanning a buffer
+			ch_line = 0;
+		}
 
 		try {
 			// prime the sequence
@@ -78,8 +137,44 @@ public class CssLexer implements Iterator<CssToken> {
 
 		} catch (IOException ex) {
 			lastError = ex;
-			token = CssToken.error(ex.getMessage(), token_index, token_line, token_column);
+			setToken(CssTokenType.ERROR, ex.getMessage());
+		}
+	}
+
+	/**
+	 * Gets the backing array, avoiding a copy where possible
+	 * @param text
+	 * @return
+	 */
+	private static char[] toCharArray(CharSequence text) {
+		if (text instanceof CharBuffer && ((CharBuffer)text).hasArray()) {
+			return ((CharBuffer)text).array();
+		}
+
+		if (text instanceof String) {
+			return ((String)text).toCharArray();
+		}
+
+		int length = text.length();
+		char[] chars = new char[length];
+		for (int i=0; i<length; i++) {
+			chars[i] = text.charAt(i);
+		}
+		return chars;
+	}
+
+	/**
+	 * Gets the offset of the sequence within its backing array
+	 * @param text
+	 * @return
+	 */
+	private static int offsetOf(CharSequence text) {
+		if (text instanceof CharBuffer && ((CharBuffer)text).hasArray()) {
+			CharBuffer buffer = (CharBuffer)text;
+			return buffer.arrayOffset() + buffer.position();
 		}
+
+		return 0;
 	}
 
 	/**
@@ -100,12 +195,21 @@ public class CssLexer implements Iterator<CssToken> {
 
 	/**
 	 * Gets the current index within the input 
+	 * NOTE: when scanning a buffer this is the char offset (CRLF counts as two)
 	 * @return
 	 */
 	public int getIndex() {
 		return ch_index;
 	}
 
+	/**
+	 * Gets the line starts recorded while scanning
+	 * @return the index or null when scanning a Reader
+	 */
+	public LineIndex getLineIndex() {
+		return lines;
+	}
+
 	/**
 	 * Returns the last exception encountered
 	 */
@@ -114,13 +218,16 @@ public class CssLexer implements Iterator<CssToken> {
 	}
 
 	/**
-	 * Clears the last error
+	 * Clears the last error, allowing scanning to resume after the error location
 	 */
 	public void clearLastError() {
 		lastError = null;
 
-		if (ensureToken().getToken().equals(CssTokenType.ERROR)) {
+		if (ensureToken() == CssTokenType.ERROR) {
+			tokenType = CssTokenType.VALUE;
+			tokenValue = null;
 			token = CssToken.start;
+			hasToken = false;
 		}
 	}
 
@@ -137,7 +244,7 @@ public class CssLexer implements Iterator<CssToken> {
 	 */
 	public boolean hasNext() {
 
-		switch (ensureToken().getToken()) {
+		switch (ensureToken()) {
 			case END:
 			case ERROR:
 				// NOTE: cannot pass error until cleared
@@ -151,6 +258,23 @@ public class CssLexer implements Iterator<CssToken> {
 	 * Returns the next token in the input
 	 */
 	public CssToken next() {
+		try {
+			ensureToken();
+			if (token == null) {
+				token = new CssToken(tokenType, tokenValue, token_index, token_line, token_column);
+			}
+			return token;
+		} finally {
+			hasToken = false;
+		}
+	}
+
+	/**
+	 * Moves to the next token in the input without allocating a CssToken,
+	 * the token is then described by getTokenType, getTokenValue, etc.
+	 * @return the type of the current token
+	 */
+	public CssTokenType advance() {
 		try {
 			return ensureToken();
 		} finally {
@@ -158,6 +282,47 @@ public class CssLexer implements Iterator<CssToken> {
 		}
 	}
 
+	/**
+	 * Gets the type of the token last returned by advance
+	 * @return
+	 */
+	public CssTokenType getTokenType() {
+		return tokenType;
+	}
+
+	/**
+	 * Gets the value of the token last returned by advance
+	 * NOTE: fixed operator values are canonical instances
+	 * @return
+	 */
+	public String getTokenValue() {
+		return tokenValue;
+	}
+
+	/**
+	 * Gets the index of the token last returned by advance
+	 * @return
+	 */
+	public int getTokenIndex() {
+		return token_index;
+	}
+
+	/**
+	 * Gets the line of the token last returned by advance
+	 * @return
+	 */
+	public int getTokenLine() {
+		return token_line;
+	}
+
+	/**
+	 * Gets the column of the token last returned by advance
+	 * @return
+	 */
+	public int getTokenColumn() {
+		return token_column;
+	}
+
 	/**
 	 * Altering the input is not supported
 	 */
@@ -171,17 +336,17 @@ public class CssLexer implements Iterator<CssToken> {
 	 * Processes the next token in the input
 	 * @throws IOException 
 	 */
-	private CssToken ensureToken() {
+	private CssTokenType ensureToken() {
 
 		if (hasToken) {
-			return token;
+			return tokenType;
 		}
 
-		switch (token.getToken()) {
+		switch (tokenType) {
 			case END:
 			case ERROR:
 				// remain in these states
-				return token;
+				return tokenType;
 			default:
 				break;
 		}
@@ -204,17 +369,17 @@ public class CssLexer implements Iterator<CssToken> {
 				case CssGrammar.OP_BLOCK_BEGIN:
 					// consume '{'
 					nextChar();
-					return (token = CssToken.blockBegin(token_index, token_line, token_column));
+					return setToken(CssTokenType.BLOCK_BEGIN, null);
 
 				case CssGrammar.OP_BLOCK_END:
 					// consume '}'
 					nextChar();
-					return (token = CssToken.blockEnd(token_index, token_line, token_column));
+					return setToken(CssTokenType.BLOCK_END, null);
 
 				case CssGrammar.OP_DECL_DELIM:
 					// consume ';'
 					nextChar();
-					return (token = CssToken.ruleDelim(token_index, token_line, token_column));
+					return setToken(CssTokenType.RULE_DELIM, null);
 
 				case CssGrammar.OP_ITEM_DELIM:
 				case CssGrammar.OP_CHILD:
@@ -224,9 +389,9 @@ public class CssLexer implements Iterator<CssToken> {
 //				case CssGrammar.OP_ATTR_END:
 //				case CssGrammar.OP_PAREN_END:
 					// consume char
-					String value = String.valueOf((char)ch);
+					String value = CssToken.operatorValue((char)ch);
 					nextChar();
-					return (token = CssToken.operator(value, token_index, token_line, token_column));
+					return setToken(CssTokenType.OPERATOR, value);
 
 				case CssGrammar.OP_STRING_DELIM:
 				case CssGrammar.OP_STRING_DELIM_ALT:
@@ -254,7 +419,7 @@ public class CssLexer implements Iterator<CssToken> {
 				case CssGrammar.OP_PLUS:
 					// consume '+' adjacent combinator
 					nextChar();
-					return (token = CssToken.operator(String.valueOf(CssGrammar.OP_ADJACENT), token_index, token_line, token_column));
+					return setToken(CssTokenType.OPERATOR, CssToken.operatorValue(CssGrammar.OP_ADJACENT));
 
 				case CssGrammar.OP_STAR:
 					setMark(CAPACITY);
@@ -263,8 +428,7 @@ public class CssLexer implements Iterator<CssToken> {
 					if (ch == CssGrammar.OP_MATCH) {
 						// consume '='
 						nextChar();
-						String star = String.valueOf(CssGrammar.OP_STAR)+CssGrammar.OP_MATCH;
-						return (token = CssToken.operator(star, token_index, token_line, token_column));
+						return setToken(CssTokenType.OPERATOR, CssToken.matchValue(CssGrammar.OP_STAR));
 					}
 					resetMark();
 					break;
@@ -273,13 +437,13 @@ public class CssLexer implements Iterator<CssToken> {
 				case CssGrammar.OP_PREFIX_MATCH:
 				case CssGrammar.OP_SUFFIX_MATCH:
 					// consume
-					String match = String.valueOf((char)ch);
+					char match = (char)ch;
 					nextChar();
 					if (ch == CssGrammar.OP_MATCH) {
 						nextChar();
-						match += CssGrammar.OP_MATCH;
+						return setToken(CssTokenType.OPERATOR, CssToken.matchValue(match));
 					}
-					return (token = CssToken.operator(match, token_index, token_line, token_column));
+					return setToken(CssTokenType.OPERATOR, CssToken.operatorValue(match));
 
 				case CssGrammar.OP_DASH_MATCH:
 					setMark(CAPACITY);
@@ -288,8 +452,7 @@ public class CssLexer implements Iterator<CssToken> {
 					if (ch == CssGrammar.OP_MATCH) {
 						// consume '='
 						nextChar();
-						String star = String.valueOf(CssGrammar.OP_DASH_MATCH)+CssGrammar.OP_MATCH;
-						return (token = CssToken.operator(star, token_index, token_line, token_column));
+						return setToken(CssTokenType.OPERATOR, CssToken.matchValue(CssGrammar.OP_DASH_MATCH));
 					}
 					resetMark();
 					break;
@@ -299,13 +462,13 @@ public class CssLexer implements Iterator<CssToken> {
 
 				case CssGrammar.OP_COMMENT:
 					if (tryScanComment()) {
-						return token;
+						return tokenType;
 					}
 					nextChar();
-					return (token = CssToken.operator(String.valueOf(CssGrammar.OP_COMMENT), token_index, token_line, token_column));
+					return setToken(CssTokenType.OPERATOR, CssToken.operatorValue(CssGrammar.OP_COMMENT));
 					
 				case EOF:
-					return (token = CssToken.end);
+					return setToken(CssTokenType.END, null);
 			}
 
 			if (isNumber || CharUtility.isDigit(ch)) {
@@ -316,7 +479,13 @@ public class CssLexer implements Iterator<CssToken> {
 
 		} catch (IOException ex) {
 			lastError = ex;
-			return (token = CssToken.error(ex.getMessage(), token_index, token_line, token_column));
+			return setToken(CssTokenType.ERROR, ex.getMessage());
+
+		} catch (SyntaxException ex) {
+			// remain in error state until cleared rather than repeating the previous token
+			lastError = ex.setLineIndex(lines);
+			setToken(CssTokenType.ERROR, ex.getMessage());
+			throw ex;
 
 		} finally {
 			hasToken = true;
@@ -328,7 +497,7 @@ public class CssLexer implements Iterator<CssToken> {
 	 * @return
 	 * @throws IOException
 	 */
-	private CssToken scanValue()
+	private CssTokenType scanValue()
 		throws IOException {
 
 		// reset the buffer
@@ -347,7 +516,7 @@ public class CssLexer implements Iterator<CssToken> {
 		while (true) {
 			if (CharUtility.isWhiteSpace(ch)) {
 				// flush the buffer
-				return (token = typedValue(buffer.toString(), token_index, token_line, token_column));
+				return typedValue();
 			}
 
 			switch (ch) {
@@ -379,14 +548,14 @@ public class CssLexer implements Iterator<CssToken> {
 				case EOF:
 					// these chars are start of other tokens
 					// flush the buffer
-					return (token = typedValue(buffer.toString(), token_index, token_line, token_column));
+					return typedValue();
 
 				case CssGrammar.OP_PAREN_END:
 				case CssGrammar.OP_ATTR_END:
 					if (buffer.length() > 0) {
 						// these chars are start of next token
 						// flush the buffer
-						return (token = typedValue(buffer.toString(), token_index, token_line, token_column));
+						return typedValue();
 					}
 					// consume until reach a special char
 					buffer.append((char)ch);
@@ -402,7 +571,7 @@ public class CssLexer implements Iterator<CssToken> {
 						resetMark();
 						// start of numeric token
 						// flush the buffer
-						return (token = typedValue(buffer.toString(), token_index, token_line, token_column));
+						return typedValue();
 					}
 
 					// consume until reach a special char
@@ -416,7 +585,7 @@ public class CssLexer implements Iterator<CssToken> {
 					nextChar();
 
 					// flush the buffer
-					return (token = typedValue(buffer.toString(), token_index, token_line, token_column));
+					return typedValue();
 
 				case CssGrammar.OP_PAIR_DELIM:
 					setMark(CAPACITY);
@@ -438,7 +607,7 @@ public class CssLexer implements Iterator<CssToken> {
 						}
 					}
 
-					if (CssGrammar.isPseudoKeyword(buffer.substring(start+shift))) {
+					if (CssGrammar.isPseudoKeyword(buffer, start+shift, buffer.length()-start-shift)) {
 						// continue consuming
 						continue;
 					}
@@ -449,12 +618,12 @@ public class CssLexer implements Iterator<CssToken> {
 					if (buffer.length() == 0) {
 						// consume ':'
 						nextChar();
-						return (token = CssToken.operator(String.valueOf(CssGrammar.OP_PAIR_DELIM), token_index, token_line, token_column));
+						return setToken(CssTokenType.OPERATOR, CssToken.operatorValue(CssGrammar.OP_PAIR_DELIM));
 					}
 
 					// end of property token
 					// flush the buffer
-					return (token = typedValue(buffer.toString(), token_index, token_line, token_column));
+					return typedValue();
 
 				default:
 					// consume until reach a special char
@@ -469,7 +638,7 @@ public class CssLexer implements Iterator<CssToken> {
 	 * Consumes the String literal appending it to the current buffer
 	 * @throws IOException
 	 */
-	private CssToken scanNumeric()
+	private CssTokenType scanNumeric()
 		throws IOException {
 
 		// reset the buffer
@@ -492,14 +661,14 @@ public class CssLexer implements Iterator<CssToken> {
 			scanIdent(true);
 		}
 
-		return (token = CssToken.numeric(buffer.toString(), token_index, token_line, token_column));
+		return setToken(CssTokenType.NUMERIC, buffer.toString());
 	}
 
 	/**
 	 * Consumes the next token as a String literal
 	 * @throws IOException
 	 */
-	private CssToken scanString()
+	private CssTokenType scanString()
 		throws IOException {
 
 		// reset the buffer
@@ -526,7 +695,7 @@ public class CssLexer implements Iterator<CssToken> {
 
 		nextChar();
 		buffer.append((char)delim);
-		return (token = CssToken.stringValue(buffer.toString(), token_index, token_line, token_column));
+		return setToken(CssTokenType.STRING, buffer.toString());
 	}
 
 	/**
@@ -534,16 +703,16 @@ public class CssLexer implements Iterator<CssToken> {
 	 * @return
 	 * @throws IOException
 	 */
-	private CssToken scanAtKeyword()
+	private CssTokenType scanAtKeyword()
 		throws IOException {
 
 		// consume '@'
 		nextChar();
 
-		return (token = CssToken.atRule(scanIdent(false), token_index, token_line, token_column));
+		return setToken(CssTokenType.AT_RULE, scanIdent(false));
 	}
 
-	private CssToken scanImportant()
+	private CssTokenType scanImportant()
 		throws IOException {
 
 		// consume '!' and any whitespace
@@ -557,13 +726,15 @@ public class CssLexer implements Iterator<CssToken> {
 				// didn't match important
 				// NOTE: this may throw an exception if block was unterminated
 				resetMark();
-				return (token = typedValue("!", token_index, token_line, token_column));
+				buffer.setLength(0);
+				buffer.append(CssGrammar.OP_IMPORTANT_BEGIN);
+				return typedValue();
 			}
 
 			nextChar();
 		}
 
-		return (token = CssToken.important(token_index, token_line, token_column));
+		return setToken(CssTokenType.IMPORTANT, null);
 	}
 
 	/**
@@ -645,7 +816,7 @@ public class CssLexer implements Iterator<CssToken> {
 			}
 		}
 
-		token = CssToken.comment(value, token_index, token_line, token_column);
+		setToken(CssTokenType.COMMENT, value);
 		return true;
 	}
 
@@ -703,11 +874,23 @@ public class CssLexer implements Iterator<CssToken> {
 		throw new SyntaxException("Unterminated block", token_index, token_line, token_column);
 	}
 
-	private static CssToken typedValue(String value, int index, int line, int column) {
-		int length = value != null ? value.length()-1 : -1;
-		if ((length == 3 || length == 6) && value.charAt(0) == CssGrammar.OP_HASH) {
+	private CssTokenType setToken(CssTokenType type, String value) {
+		tokenType = type;
+		tokenValue = value;
+		// materialized only if requested
+		token = null;
+		return type;
+	}
+
+	/**
+	 * Classifies the scanned value directly from the buffer
+	 * @return
+	 */
+	private CssTokenType typedValue() {
+		int length = buffer.length()-1;
+		if ((length == 3 || length == 6) && buffer.charAt(0) == CssGrammar.OP_HASH) {
 			while (length > 0) {
-				if (!CharUtility.isHexDigit(value.charAt(length))) {
+				if (!CharUtility.isHexDigit(buffer.charAt(length))) {
 					break;
 				}
 
@@ -715,27 +898,28 @@ public class CssLexer implements Iterator<CssToken> {
 			}
 
 			if (length == 0) {
-				return CssToken.color(value, index, line, column);
+				return setToken(CssTokenType.COLOR, buffer.toString());
 			}
 		}
 
-		if (CharUtility.isOperator(value)) {
-			return CssToken.operator(value, index, line, column);
+		length = buffer.length();
+		if (CharUtility.isOperator(buffer, 0, length)) {
+			return setToken(CssTokenType.OPERATOR, (length == 1) ? CssToken.operatorValue(buffer.charAt(0)) : buffer.toString());
 
-		} else if (CssGrammar.decodeColor(value) != null) {
-			return CssToken.color(value, index, line, column);
+		} else if (CssGrammar.decodeColor(buffer, 0, length) != null) {
+			return setToken(CssTokenType.COLOR, buffer.toString());
 		}
 
-		int last = value != null ? value.length()-1 : -1;
+		int last = length-1;
 		if (last >= 0) {
-			switch (value.charAt(last)) {
+			switch (buffer.charAt(last)) {
 				case CssGrammar.OP_PAREN_BEGIN:
-					return CssToken.func(value.substring(0, last), index, line, column);
+					return setToken(CssTokenType.FUNCTION, buffer.substring(0, last));
 				case CssGrammar.OP_ATTR_BEGIN:
-					return CssToken.accessor(value.substring(0, last), index, line, column);
+					return setToken(CssTokenType.ACCESSOR, buffer.substring(0, last));
 			}
 		}
-		return CssToken.value(value, index, line, column);
+		return setToken(CssTokenType.VALUE, buffer.toString());
 	}
 
 	/**
@@ -744,6 +928,10 @@ public class CssLexer implements Iterator<CssToken> {
 	 * @throws IOException
 	 */
 	private int nextChar() throws IOException {
+		if (reader == null) {
+			return nextBufferChar();
+		}
+
 		int prevLine = ch_line;
 
 		ch = reader.read();
@@ -760,6 +948,42 @@ public class CssLexer implements Iterator<CssToken> {
 		return ch;
 	}
 
+	/**
+	 * Gets the next character directly from the buffer and updates statistics.
+	 * Line terminators are normalized to '\n' consistent with LineNumberReader.
+	 * @return
+	 */
+	private int nextBufferChar() {
+		// index is the offset into the input
+		ch_index = chars_pos - chars_start;
+
+		if (chars_pos >= chars_end) {
+			ch = EOF;
+			ch_column++;
+			return ch;
+		}
+
+		ch = chars[chars_pos++];
+
+		if (ch == '\r') {
+			if (chars_pos < chars_end && chars[chars_pos] == '\n') {
+				// compress CRLF into a single newline
+				chars_pos++;
+			}
+			ch = '\n';
+		}
+
+		if (ch == '\n') {
+			ch_line++;
+			ch_column = 0;
+			lines.addLine(ch_line, chars_pos - chars_start);
+		} else {
+			ch_column++;
+		}
+
+		return ch;
+	}
+
 	/**
 	 * Marks the input location to enable resetting
 	 * @param bufferSize
@@ -772,7 +996,11 @@ public class CssLexer implements Iterator<CssToken> {
 		mark_index = ch_index;
 		mark_ch = ch;
 
-		reader.mark(bufferSize);
+		if (reader == null) {
+			mark_pos = chars_pos;
+		} else {
+			reader.mark(bufferSize);
+		}
 	}
 
 	/**
@@ -786,7 +1014,11 @@ public class CssLexer implements Iterator<CssToken> {
 		ch_index = mark_index;
 		ch = mark_ch;
 
-		reader.reset();
+		if (reader == null) {
+			chars_pos = mark_pos;
+		} else {
+			reader.reset();
+		}
 	}
 
 	/**
@@ -802,6 +1034,20 @@ public class CssLexer implements Iterator<CssToken> {
 		return list;
 	}
 
+	/**
+	 * Produces a compact buffer of the remaining tokens, for holding them in less heap than toList
+	 * @return
+	 */
+	public CssTokenBuffer toBuffer() {
+
+		// values are sliced from the source when scanning a buffer
+		CssTokenBuffer buffer = new CssTokenBuffer(chars, chars_start);
+		for (CssTokenType type = advance(); type != CssTokenType.END && type != CssTokenType.ERROR; type = advance()) {
+			buffer.add(type, tokenValue, token_index, token_line, token_column, ch_index);
+		}
+		return buffer;
+	}
+
 	/**
 	 * Properly String-decodes the value
 	 * @return
@@ -1,6 +1,7 @@
 package org.duelengine.css.parsing;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
@@ -26,6 +27,7 @@ import org.duelengine.css.ast.StringNode;
 import org.duelengine.css.ast.StyleSheetNode;
 import org.duelengine.css.ast.ValueNode;
 import org.duelengine.css.codegen.ArithmeticEvaluator;
+import org.duelengine.css.codegen.LessTemplate;
 
 /**
  * Processes a token sequence into AST
@@ -49,8 +51,12 @@ public class CssParser {
 	}
 
 	private final Syntax syntax;
+	private final ArithmeticEvaluator evaluator = new ArithmeticEvaluator();
 	private CssToken next;
 	private Iterator<CssToken> tokens;
+	private CssHandler handler;
+	private boolean deferred;
+	private List<SyntaxException> errors;
 
 	public CssParser() {
 		this(null);
@@ -104,16 +110,129 @@ public class CssParser {
 		try {
 			StyleSheetNode document = new StyleSheetNode(0, 0, 0);
 			while (hasNext()) {
-				parseStatement(document, false);
+				parseStatementOrRecover(document, false);
 			}
 			return document;
 
+		} catch (SyntaxException ex) {
+			throw withLineIndex(ex);
+
 		} finally {
 			tokens = null;
 			next = null;
 		}
 	}
 
+	/**
+	 * Parses token sequence into a best-effort AST, collecting syntax errors rather than
+	 * stopping at the first. Invalid statements are dropped up to the next ';' or '}'
+	 * at the same nesting level.
+	 * @param tokens
+	 * @param syntaxErrors receives each error encountered
+	 * @return
+	 * @throws IOException
+	 */
+	public StyleSheetNode parse(Iterable<CssToken> tokens, List<SyntaxException> syntaxErrors)
+		throws IOException {
+
+		return parse(tokens != null ? tokens.iterator() : null, syntaxErrors);
+	}
+
+	/**
+	 * Parses token sequence into a best-effort AST, collecting syntax errors rather than
+	 * stopping at the first. Invalid statements are dropped up to the next ';' or '}'
+	 * at the same nesting level.
+	 * @param cssTokens
+	 * @param syntaxErrors receives each error encountered
+	 * @return
+	 * @throws IOException
+	 */
+	public StyleSheetNode parse(Iterator<CssToken> cssTokens, List<SyntaxException> syntaxErrors)
+		throws IOException {
+
+		if (syntaxErrors == null) {
+			throw new NullPointerException("syntaxErrors");
+		}
+
+		errors = syntaxErrors;
+		try {
+			return parse(cssTokens);
+
+		} finally {
+			errors = null;
+		}
+	}
+
+	/**
+	 * Parses token sequence into a template which may be rendered against different variable values
+	 * @param tokens
+	 * @return
+	 * @throws IOException
+	 */
+	public LessTemplate parseTemplate(Iterable<CssToken> tokens)
+		throws IOException {
+
+		return parseTemplate(tokens != null ? tokens.iterator() : null);
+	}
+
+	/**
+	 * Parses token sequence into a template which may be rendered against different variable values.
+	 * LESS variables and expressions are left unevaluated until rendered.
+	 * @param cssTokens
+	 * @return
+	 * @throws IOException
+	 */
+	public LessTemplate parseTemplate(Iterator<CssToken> cssTokens)
+		throws IOException {
+
+		deferred = true;
+		try {
+			return new LessTemplate(parse(cssTokens));
+
+		} finally {
+			deferred = false;
+		}
+	}
+
+	/**
+	 * Parses token sequence reporting statements to the handler as they complete
+	 * @param tokens
+	 * @param cssHandler
+	 * @throws IOException
+	 */
+	public void parse(Iterable<CssToken> tokens, CssHandler cssHandler)
+		throws IOException {
+
+		parse(tokens != null ? tokens.iterator() : null, cssHandler);
+	}
+
+	/**
+	 * Parses token sequence reporting statements to the handler as they complete.
+	 * Reported statements are not retained so memory use does not grow with input size.
+	 * Only CSS syntax is supported since LESS evaluation needs the whole document.
+	 * @param cssTokens
+	 * @param cssHandler
+	 * @throws IOException
+	 */
+	public void parse(Iterator<CssToken> cssTokens, CssHandler cssHandler)
+		throws IOException {
+
+		if (cssHandler == null) {
+			throw new NullPointerException("cssHandler");
+		}
+		if (syntax != Syntax.CSS) {
+			throw new UnsupportedOperationException("Streaming is only supported for CSS syntax");
+		}
+
+		handler = cssHandler;
+		try {
+			parse(cssTokens);
+
+		} finally {
+			handler = null;
+		}
+	}
+
 	/**
 	 * Processes the next node
 	 * @param parent
@@ -128,6 +247,8 @@ public class CssParser {
 		// - declarations (unless root)
 		// - statements
 
+		int start = (handler != null) ? parent.childCount() : 0;
+
 		switch (next.getToken()) {
 			case AT_RULE:
 				if (isRuleSet) {
@@ -166,6 +287,133 @@ public class CssParser {
 			default:
 				throw new InvalidTokenException("Invalid token: "+next, next);
 		}
+
+		if (handler != null) {
+			endStatements(parent, start);
+		}
+	}
+
+	/**
+	 * Processes the next node, recording any error and skipping past the statement when recovering
+	 */
+	private void parseStatementOrRecover(ContainerNode parent, boolean isRuleSet)
+		throws IOException {
+
+		if (errors == null) {
+			parseStatement(parent, isRuleSet);
+			return;
+		}
+
+		int count = parent.childCount();
+		try {
+			parseStatement(parent, isRuleSet);
+
+		} catch (SyntaxException ex) {
+			errors.add(withLineIndex(ex));
+
+			// drop the partial statement
+			List<CssNode> children = parent.getChildren();
+			while (children.size() > count) {
+				parent.removeChild(children.get(children.size()-1));
+			}
+
+			skipStatement(parent instanceof BlockNode);
+		}
+	}
+
+	/**
+	 * Skips tokens through the next ';' or block at the current nesting level.
+	 * A '}' closing the current block is left for the block to consume.
+	 */
+	private void skipStatement(boolean inBlock)
+		throws IOException {
+
+		if (tokens instanceof CssLexer) {
+			// resume scanning after the lexer error
+			((CssLexer)tokens).clearLastError();
+		}
+
+		int depth = 0;
+		while (hasNext()) {
+			switch (next.getToken()) {
+				case BLOCK_BEGIN:
+					depth++;
+					break;
+
+				case BLOCK_END:
+					if (depth == 0 && inBlock) {
+						// end of the containing block
+						return;
+					}
+					if (depth > 0) {
+						depth--;
+					}
+					if (depth == 0) {
+						// consume '}' ending the statement
+						next = null;
+						return;
+					}
+					break;
+
+				case RULE_DELIM:
+					if (depth == 0) {
+						// consume ';' ending the statement
+						next = null;
+						return;
+					}
+					break;
+
+				default:
+					break;
+			}
+
+			// consume token
+			next = null;
+		}
+	}
+
+	/**
+	 * Reports the start of a rule-set along with any comments preceding its block
+	 */
+	private void startRuleSet(RuleSetNode ruleSet)
+		throws IOException {
+
+		handler.startRuleSet(ruleSet);
+		for (SelectorNode selector : ruleSet.getSelectors()) {
+			handler.selector(selector);
+		}
+		endStatements(ruleSet, 0);
+	}
+
+	/**
+	 * Reports completed statements and detaches them from the parent
+	 */
+	private void endStatements(ContainerNode parent, int start)
+		throws IOException {
+
+		List<CssNode> children = parent.getChildren();
+		while (children.size() > start) {
+			CssNode child = children.get(start);
+
+			if (child instanceof DeclarationNode) {
+				handler.declaration((DeclarationNode)child);
+
+			} else if (child instanceof CommentNode) {
+				handler.comment((CommentNode)child);
+
+			} else if (child instanceof AtRuleNode) {
+				if (((AtRuleNode)child).getBlock() == null) {
+					handler.startAtRule((AtRuleNode)child);
+				} else {
+					handler.endBlock();
+				}
+
+			} else if (child instanceof BlockNode) {
+				handler.endBlock();
+			}
+
+			parent.removeChild(child);
+		}
 	}
 
 	private void parseAtRule(ContainerNode parent)
@@ -191,6 +439,9 @@ public class CssParser {
 					atRule.setBlock(block);
 					String canonicalKeyword = CssGrammar.removeVendorPrefix(atRule.getKeyword());
 					boolean asRuleSet = !("media".equals(canonicalKeyword) || "keyframes".equals(canonicalKeyword));
+					if (handler != null) {
+						handler.startAtRule(atRule);
+					}
 					parseBlock(block, asRuleSet);
 					return;
 
@@ -241,6 +492,9 @@ public class CssParser {
 						// LESS allows nested rules, unroll selectors here
 						ruleSet.expandSelectors(nestedParent.getSelectors());
 					}
+					if (handler != null) {
+						startRuleSet(ruleSet);
+					}
 					parseBlock(ruleSet, true);
 					return;
 
@@ -283,6 +537,11 @@ public class CssParser {
 					throw new InvalidTokenException("Invalid token in rule-set: "+next, next);
 			}
 		}
+
+		if (handler != null) {
+			// input ended before block, still balance the eventual endBlock
+			startRuleSet(ruleSet);
+		}
 	}
 
 	private boolean parseSelector(RuleSetNode ruleSet, CssToken start)
@@ -395,6 +654,9 @@ public class CssParser {
 			new LessVariableDeclarationNode(ident.getValue(), ident.getIndex(), ident.getLine(), ident.getColumn()) :
 			new DeclarationNode(ident.getValue(), ident.getIndex(), ident.getLine(), ident.getColumn());
 
+		if (requiredEval && deferred) {
+			((LessVariableDeclarationNode)declaration).setDeferred(true);
+		}
 		parent.appendChild(declaration);
 
 		int nesting = 0;
@@ -413,7 +675,9 @@ public class CssParser {
 					}
 
 					// LESS variable references leverage @rule syntax
-					declaration.appendChild(new LessVariableReferenceNode(next.getValue(), next.getIndex(), next.getLine(), next.getColumn()));
+					LessVariableReferenceNode varRef = new LessVariableReferenceNode(next.getValue(), next.getIndex(), next.getLine(), next.getColumn());
+					varRef.setDeferred(deferred);
+					declaration.appendChild(varRef);
 					requiredEval = true;
 
 					// consume token
@@ -525,6 +789,7 @@ public class CssParser {
 											for (LessVariableDeclarationNode variable : args.getVariables()) {
 												ruleSet.putVariable(variable);
 											}
+											elevateParams(args, ruleSet);
 										}
 										if (!args.hasChildren()) {
 											parent.replaceChild(new ValueNode(func.getValue(), func.getIndex(), func.getLine(), func.getColumn()), func);
@@ -574,6 +839,7 @@ public class CssParser {
 											for (LessVariableDeclarationNode variable : args.getVariables()) {
 												ruleSet.putVariable(variable);
 											}
+											elevateParams(args, ruleSet);
 										}
 										if (!args.hasChildren()) {
 											parent.replaceChild(new ValueNode(func.getValue(), func.getIndex(), func.getLine(), func.getColumn()), func);
@@ -741,7 +1007,7 @@ public class CssParser {
 			case RULE_DELIM:
 				if (context == NODE_CONTEXT.FUNCTION) {
 					// Data URIs contain semicolons
-					parent.appendChild(new OperatorNode(Character.toString(CssGrammar.OP_DECL_DELIM), token.getIndex(), token.getLine(), token.getColumn()));
+					parent.appendChild(new OperatorNode(CssToken.operatorValue(CssGrammar.OP_DECL_DELIM), token.getIndex(), token.getLine(), token.getColumn()));
 					break;
 				}
 
@@ -756,8 +1022,13 @@ public class CssParser {
 	}
 
 	private void evalExpressions(DeclarationNode declaration, boolean throwOnError) {
+		if (deferred) {
+			// templates evaluate when rendered
+			return;
+		}
+
 		try {
-			ValueNode result = ArithmeticEvaluator.eval(declaration.getChildren());
+			ValueNode result = evaluator.evaluate(declaration.getChildren());
 			declaration.getChildren().clear();
 			declaration.appendChild(result);
 
@@ -767,6 +1038,27 @@ public class CssParser {
 		}
 	}
 
+	/**
+	 * Moves deferred mixin params from the function args into the rule-set body
+	 */
+	private void elevateParams(ContainerNode args, ContainerNode ruleSet) {
+		if (!deferred) {
+			return;
+		}
+
+		List<CssNode> params = new ArrayList<CssNode>();
+		for (CssNode child : args.getChildren()) {
+			if (child instanceof LessVariableDeclarationNode) {
+				params.add(child);
+			}
+		}
+
+		for (CssNode param : params) {
+			args.removeChild(param);
+			ruleSet.appendChild(param);
+		}
+	}
+
 	private void evalMixins(RuleSetNode targetSet, RuleSetNode nestedSet) {
 		if (targetSet == null) {
 			throw new SyntaxException("Invalid sequence in rule-set", nestedSet.getIndex(), nestedSet.getLine(), nestedSet.getColumn());
@@ -799,13 +1091,23 @@ public class CssParser {
 		next = null;
 
 		while (hasNext() && !CssTokenType.BLOCK_END.equals(next.getToken())) {
-			parseStatement(block, isRuleSet);
+			parseStatementOrRecover(block, isRuleSet);
 		}
 
 		// consume block end
 		next = null;
 	}
 
+	/**
+	 * Associates the source lines when available from the lexer
+	 */
+	private SyntaxException withLineIndex(SyntaxException ex) {
+		if (tokens instanceof CssLexer) {
+			ex.setLineIndex(((CssLexer)tokens).getLineIndex());
+		}
+		return ex;
+	}
+
 	private InvalidTokenException throwErrorToken(CssToken token) {
 		// TODO: back with interface?
 		if (tokens instanceof CssLexer) {
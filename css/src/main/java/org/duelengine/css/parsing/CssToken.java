@@ -76,6 +76,46 @@ public class CssToken {
 
 	/* reusable tokens and helper methods */
 
+	// canonical values for fixed single-char operators and attribute matches
+	private static final String[] OPERATORS = new String[128];
+	private static final String[] MATCHES = new String[128];
+	static {
+		for (char ch=0; ch<OPERATORS.length; ch++) {
+			OPERATORS[ch] = String.valueOf(ch);
+			MATCHES[ch] = String.valueOf(ch)+CssGrammar.OP_MATCH;
+		}
+	}
+
+	/**
+	 * Gets the shared value for a single-char operator
+	 * @param ch
+	 * @return
+	 */
+	static String operatorValue(char ch) {
+		return (ch < OPERATORS.length) ? OPERATORS[ch] : String.valueOf(ch);
+	}
+
+	/**
+	 * Gets the shared value for an operator which may be a single char
+	 * @param value
+	 * @return
+	 */
+	static String operatorValue(String value) {
+		if (value != null && value.length() == 1) {
+			return operatorValue(value.charAt(0));
+		}
+		return value;
+	}
+
+	/**
+	 * Gets the shared value for an attribute match operator (e.g. "~=")
+	 * @param ch
+	 * @return
+	 */
+	static String matchValue(char ch) {
+		return (ch < MATCHES.length) ? MATCHES[ch] : String.valueOf(ch)+CssGrammar.OP_MATCH;
+	}
+
 	static final CssToken start = new CssToken(CssTokenType.VALUE, -1, -1, -1);
 	static final CssToken end = new CssToken(CssTokenType.END, -1, -1, -1);
 
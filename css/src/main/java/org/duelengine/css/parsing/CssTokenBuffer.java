@@ -0,0 +1,241 @@
+package org.duelengine.css.parsing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Compact token sequence stored as parallel primitive arrays, for retaining a
+ * tokenized source in far less heap than a list of CssToken. Values are materialized
+ * on demand from the source chars; only values which do not appear verbatim in the
+ * source are held as Strings. This reduces what is retained rather than what is
+ * allocated: the lexer still produces each value while scanning, and iterating
+ * materializes a CssToken per token, so parse from CssLexer directly when the
+ * tokens are not otherwise kept.
+ */
+public class CssTokenBuffer implements Iterable<CssToken> {
+
+	private static final int CAPACITY = 64;
+	private static final CssTokenType[] TYPES = CssTokenType.values();
+
+	// marks a token without a value
+	private static final int NO_VALUE = -1;
+
+	// values begin at the token or just after its delimiter, e.g. '@' or "/*"
+	private static final int MAX_VALUE_OFFSET = 2;
+
+	private final char[] chars;
+	private final int offset;
+	private int size;
+	private int[] types;
+	private int[] indexes;
+	private int[] starts;
+	private int[] lengths;
+	private int[] lines;
+	private int[] columns;
+	private List<String> values;
+
+	/**
+	 * Ctor
+	 * @param source chars from which values are sliced, may be null
+	 * @param sourceOffset offset of index zero within source
+	 */
+	CssTokenBuffer(char[] source, int sourceOffset) {
+		chars = source;
+		offset = sourceOffset;
+
+		types = new int[CAPACITY];
+		indexes = new int[CAPACITY];
+		starts = new int[CAPACITY];
+		lengths = new int[CAPACITY];
+		lines = new int[CAPACITY];
+		columns = new int[CAPACITY];
+	}
+
+	/**
+	 * Appends a token
+	 * @param type
+	 * @param value
+	 * @param index
+	 * @param line
+	 * @param column
+	 * @param end index just past the token within the source
+	 */
+	void add(CssTokenType type, String value, int index, int line, int column, int end) {
+		if (size == types.length) {
+			int capacity = size*2;
+			types = Arrays.copyOf(types, capacity);
+			indexes = Arrays.copyOf(indexes, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			lengths = Arrays.copyOf(lengths, capacity);
+			lines = Arrays.copyOf(lines, capacity);
+			columns = Arrays.copyOf(columns, capacity);
+		}
+
+		types[size] = type.ordinal();
+		indexes[size] = index;
+		lines[size] = line;
+		columns[size] = column;
+
+		if (value == null) {
+			starts[size] = NO_VALUE;
+			lengths[size] = 0;
+
+		} else {
+			int start = find(value, index, end);
+			if (start >= 0) {
+				starts[size] = start;
+				lengths[size] = value.length();
+
+			} else {
+				// value was transformed from the source so must be kept
+				if (values == null) {
+					values = new ArrayList<String>();
+				}
+				starts[size] = values.size();
+				lengths[size] = -1;
+				values.add(value);
+			}
+		}
+
+		size++;
+	}
+
+	/**
+	 * Locates the value within the token source, checking only where a verbatim value may begin
+	 * @return the absolute offset into chars, or -1 if not found
+	 */
+	private int find(String value, int index, int end) {
+		if (chars == null || index < 0) {
+			return -1;
+		}
+
+		int length = value.length();
+		int last = Math.min(Math.min(offset+end, chars.length)-length, offset+index+MAX_VALUE_OFFSET);
+		for (int start=offset+index; start<=last; start++) {
+			int i = 0;
+			while (i < length && chars[start+i] == value.charAt(i)) {
+				i++;
+			}
+			if (i == length) {
+				return start;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets the number of tokens
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the type of the token at position i
+	 * @param i
+	 * @return
+	 */
+	public CssTokenType getType(int i) {
+		checkBounds(i);
+		return TYPES[types[i]];
+	}
+
+	/**
+	 * Gets the value of the token at position i, materializing it from the source
+	 * @param i
+	 * @return
+	 */
+	public String getValue(int i) {
+		checkBounds(i);
+
+		int start = starts[i];
+		int length = lengths[i];
+		if (length < 0) {
+			return values.get(start);
+		}
+		if (start == NO_VALUE) {
+			return null;
+		}
+		if (length == 1 && types[i] == CssTokenType.OPERATOR.ordinal()) {
+			return CssToken.operatorValue(chars[start]);
+		}
+		return new String(chars, start, length);
+	}
+
+	/**
+	 * Gets the index of the token at position i within the input
+	 * @param i
+	 * @return
+	 */
+	public int getIndex(int i) {
+		checkBounds(i);
+		return indexes[i];
+	}
+
+	/**
+	 * Gets the line of the token at position i
+	 * @param i
+	 * @return
+	 */
+	public int getLine(int i) {
+		checkBounds(i);
+		return lines[i];
+	}
+
+	/**
+	 * Gets the column of the token at position i
+	 * @param i
+	 * @return
+	 */
+	public int getColumn(int i) {
+		checkBounds(i);
+		return columns[i];
+	}
+
+	/**
+	 * Materializes the token at position i
+	 * @param i
+	 * @return
+	 */
+	public CssToken get(int i) {
+		return new CssToken(getType(i), getValue(i), indexes[i], lines[i], columns[i]);
+	}
+
+	/**
+	 * Iterates the tokens, materializing each as it is visited
+	 */
+	@Override
+	public Iterator<CssToken> iterator() {
+		return new Iterator<CssToken>() {
+			private int next;
+
+			@Override
+			public boolean hasNext() {
+				return next < size;
+			}
+
+			@Override
+			public CssToken next() {
+				if (next >= size) {
+					throw new NoSuchElementException();
+				}
+				return get(next++);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("Not supported");
+			}
+		};
+	}
+
+	private void checkBounds(int i) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException("Index: "+i+", Size: "+size);
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package org.duelengine.css.parsing;
+
+import java.util.Map;
+
+/**
+ * Immutable open-addressed lookup which can be probed with a range
+ * of any CharSequence so callers need not allocate a substring.
+ * Safe to share between threads once constructed.
+ */
+final class KeywordTable {
+
+	private final String[] keys;
+	private final String[] values;
+	private final int mask;
+	private final int maxLength;
+
+	/**
+	 * Ctor
+	 * @param entries keywords mapped to optional values
+	 */
+	KeywordTable(Map<String, String> entries) {
+		int capacity = 8;
+		while (capacity < entries.size()*2) {
+			capacity <<= 1;
+		}
+
+		keys = new String[capacity];
+		values = new String[capacity];
+		mask = capacity-1;
+
+		int longest = 0;
+		for (Map.Entry<String, String> entry : entries.entrySet()) {
+			String key = entry.getKey();
+			int slot = hash(key, 0, key.length()) & mask;
+			while (keys[slot] != null) {
+				slot = (slot+1) & mask;
+			}
+			keys[slot] = key;
+			values[slot] = entry.getValue();
+			longest = Math.max(longest, key.length());
+		}
+		maxLength = longest;
+	}
+
+	/**
+	 * Determines if the range is a keyword
+	 * @param text
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	boolean contains(CharSequence text, int start, int end) {
+		return find(text, start, end) >= 0;
+	}
+
+	/**
+	 * Gets the value of the keyword in the range
+	 * @param text
+	 * @param start
+	 * @param end
+	 * @return the value or null if not a keyword
+	 */
+	String get(CharSequence text, int start, int end) {
+		int slot = find(text, start, end);
+		return (slot >= 0) ? values[slot] : null;
+	}
+
+	private int find(CharSequence text, int start, int end) {
+		int length = end-start;
+		if (length < 1 || length > maxLength) {
+			return -1;
+		}
+
+		int slot = hash(text, start, end) & mask;
+		for (String key = keys[slot]; key != null; key = keys[slot]) {
+			if (matches(key, text, start, length)) {
+				return slot;
+			}
+			slot = (slot+1) & mask;
+		}
+		return -1;
+	}
+
+	private static boolean matches(String key, CharSequence text, int start, int length) {
+		if (key.length() != length) {
+			return false;
+		}
+		for (int i=0; i<length; i++) {
+			if (key.charAt(i) != text.charAt(start+i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int hash(CharSequence text, int start, int end) {
+		int hash = 0;
+		for (int i=start; i<end; i++) {
+			hash = 31*hash + text.charAt(i);
+		}
+		// spread high bits into the masked range
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,126 @@
+package org.duelengine.css.parsing;
+
+import java.util.Arrays;
+
+/**
+ * Offsets of the line starts within a source buffer, recorded as it is lexed,
+ * allowing diagnostics to slice lines without re-reading the source.
+ * Line terminators follow CssLexer: CRLF, CR or LF.
+ */
+public class LineIndex {
+
+	private static final int CAPACITY = 64;
+
+	private final char[] chars;
+	private final int start;
+	private final int end;
+	private int[] starts = new int[CAPACITY];
+	private int count = 1;
+
+	/**
+	 * Ctor
+	 * @param source
+	 * @param sourceStart offset of index zero within source
+	 * @param sourceEnd offset just past the end of input within source
+	 */
+	LineIndex(char[] source, int sourceStart, int sourceEnd) {
+		chars = source;
+		start = sourceStart;
+		end = sourceEnd;
+	}
+
+	/**
+	 * Records the start of a line, ignoring any already known
+	 * @param line
+	 * @param index offset of the line start relative to the input
+	 */
+	void addLine(int line, int index) {
+		if (line != count) {
+			return;
+		}
+
+		if (count == starts.length) {
+			starts = Arrays.copyOf(starts, count*2);
+		}
+		starts[count++] = index;
+	}
+
+	/**
+	 * Gets the starting index of the line
+	 * @param line zero-based line number
+	 * @return the index or -1 if beyond the end of input
+	 */
+	public int getLineStart(int line) {
+		if (line < 0 || !ensureLine(line)) {
+			return -1;
+		}
+		return starts[line];
+	}
+
+	/**
+	 * Gets the text of the line without its terminator
+	 * @param line zero-based line number
+	 * @return the text or null if beyond the end of input
+	 */
+	public String getLineText(int line) {
+		int index = getLineStart(line);
+		if (index < 0) {
+			return null;
+		}
+
+		int from = start+index;
+		int to = from;
+		while (to < end && chars[to] != '\r' && chars[to] != '\n') {
+			to++;
+		}
+		return new String(chars, from, to-from);
+	}
+
+	/**
+	 * Finds the line containing the index
+	 * @param index offset relative to the input
+	 * @return zero-based line number or -1 if out of range
+	 */
+	public int findLine(int index) {
+		if (index < 0 || index > end-start) {
+			return -1;
+		}
+
+		// ensure all lines up to the index are known
+		while (starts[count-1] < index && scanLine()) {}
+
+		int line = Arrays.binarySearch(starts, 0, count, index);
+		return (line >= 0) ? line : -line-2;
+	}
+
+	/**
+	 * Scans ahead of the lexer as needed to locate the line
+	 */
+	private boolean ensureLine(int line) {
+		while (line >= count) {
+			if (!scanLine()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Records the start of the line following the last known
+	 * @return false if no more lines
+	 */
+	private boolean scanLine() {
+		int i = start+starts[count-1];
+		while (i < end) {
+			char ch = chars[i++];
+			if (ch == '\r' && i < end && chars[i] == '\n') {
+				i++;
+			}
+			if (ch == '\r' || ch == '\n') {
+				addLine(count, i-start);
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -9,6 +9,7 @@ public class SyntaxException extends IllegalArgumentException {
 	private final int index;
 	private final int line;
 	private final int column;
+	private transient LineIndex lineIndex;
 
 	public SyntaxException(String message, int index, int line, int column) {
 		super(message);
@@ -35,4 +36,31 @@ public class SyntaxException extends IllegalArgumentException {
 	public int getColumn() {
 		return column;
 	}
+
+	/**
+	 * Gets the line starts of the source, if available
+	 */
+	public LineIndex getLineIndex() {
+		return lineIndex;
+	}
+
+	/**
+	 * Gets the text of the line containing the error without re-reading the source
+	 * @return the line or null if the source is unavailable
+	 */
+	public String getSourceLine() {
+		return (lineIndex != null) ? lineIndex.getLineText(line) : null;
+	}
+
+	/**
+	 * Associates the source line starts unless already set
+	 * @param index
+	 * @return this exception
+	 */
+	SyntaxException setLineIndex(LineIndex index) {
+		if (lineIndex == null) {
+			lineIndex = index;
+		}
+		return this;
+	}
 }
@@ -1,6 +1,11 @@
 package org.duelengine.css.codegen;
 
 import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.duelengine.css.ast.*;
 import org.duelengine.css.parsing.InvalidNodeException;
 import org.junit.Test;
@@ -679,4 +684,36 @@ public class ArithmeticEvaluatorTest {
 
 		assertEquals(expected, actual);
 	}
+
+	@Test
+	public void evaluateReusedTest() {
+
+		ArithmeticEvaluator evaluator = new ArithmeticEvaluator();
+
+		// long enough to grow the stacks
+		List<CssNode> input = new ArrayList<CssNode>();
+		for (int i=0; i<20; i++) {
+			input.add(new OperatorNode("("));
+		}
+		input.add(new NumericNode("1px"));
+		for (int i=0; i<20; i++) {
+			input.add(new OperatorNode("+"));
+			input.add(new NumericNode("1px"));
+			input.add(new OperatorNode(")"));
+		}
+		assertEquals(new NumericNode("21px"), evaluator.evaluate(input));
+
+		try {
+			// missing operand
+			evaluator.evaluate(Arrays.<CssNode>asList(new NumericNode("1px"), new OperatorNode("*")));
+			fail("Expected InvalidNodeException");
+		} catch (InvalidNodeException ex) {
+			// expected
+		}
+
+		// failure does not leave stale state behind
+		ValueNode actual = evaluator.evaluate(Arrays.<CssNode>asList(new NumericNode("2px"), new OperatorNode("*"), new NumericNode("3")));
+		assertEquals(new NumericNode("6px"), actual);
+	}
 }
+
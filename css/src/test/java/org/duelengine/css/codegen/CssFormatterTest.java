@@ -5,6 +5,8 @@ import static org.junit.Assert.*;
 import java.io.IOException;
 
 import org.duelengine.css.ast.*;
+import org.duelengine.css.parsing.CssLexer;
+import org.duelengine.css.parsing.CssParser;
 import org.junit.Test;
 
 public class CssFormatterTest {
@@ -1573,4 +1575,45 @@ public class CssFormatterTest {
 
 		assertEquals(expected, actual);
 	}
+
+	private static final String STREAM_INPUT =
+		"@charset \"UTF-8\";\n" +
+		"/* header */\n" +
+		"@import url(foo.css) screen;\n" +
+		"h1, h2 > a /* sel */ { color : red ; margin: 0 auto !important; }\n" +
+		".empty {}\n" +
+		"@media screen and (max-width: 100px) {\n" +
+		"\t.a { /* inner */ width: 10px }\n" +
+		"\t.b { }\n" +
+		"\t@page :first { margin: 1in; }\n" +
+		"}\n" +
+		"p{font:12px/1.5 Arial,sans-serif}";
+
+	@Test
+	public void streamCompactTest() throws IOException {
+		assertStreamMatches(new CodeGenSettings());
+	}
+
+	@Test
+	public void streamPrettyTest() throws IOException {
+		assertStreamMatches(new CodeGenSettings("\t", "\n"));
+	}
+
+	@Test
+	public void streamInlineBracesTest() throws IOException {
+		CodeGenSettings settings = new CodeGenSettings("  ", "\n");
+		settings.setInlineBraces(true);
+		assertStreamMatches(settings);
+	}
+
+	private static void assertStreamMatches(CodeGenSettings settings) throws IOException {
+
+		StringBuilder expected = new StringBuilder();
+		new CssFormatter(settings).write(expected, new CssParser().parse(new CssLexer(STREAM_INPUT)));
+
+		StringBuilder actual = new StringBuilder();
+		new CssParser().parse(new CssLexer(STREAM_INPUT), new CssStreamFormatter(actual, settings));
+
+		assertEquals(expected.toString(), actual.toString());
+	}
 }
@@ -0,0 +1,111 @@
+package org.duelengine.css.codegen;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.duelengine.css.ast.StyleSheetNode;
+import org.duelengine.css.parsing.CssLexer;
+import org.duelengine.css.parsing.CssParser;
+import org.duelengine.css.parsing.CssParser.Syntax;
+import org.junit.Test;
+
+public class LessTemplateTest {
+
+	private static final String THEME =
+		"@base-color: #111;\n" +
+		"@the-border: 1px;\n" +
+		"@accent: @base-color + #222;\n" +
+		"#header { color: @base-color * 3; border-left: @the-border; border-right: @the-border * 2; }\n" +
+		"#footer { color: (@base-color + #111) * 1.5; background: @accent; }\n" +
+		".rounded(@radius: 5px) { border-radius: @radius; margin: 0 auto; }\n" +
+		".nav { a { color: @accent; } }";
+
+	@Test
+	public void renderMatchesParseTest() throws IOException {
+
+		String expected = format(new CssParser(Syntax.LESS).parse(new CssLexer(THEME, Syntax.LESS)));
+
+		LessTemplate template = new CssParser(Syntax.LESS).parseTemplate(new CssLexer(THEME, Syntax.LESS));
+		String actual = format(template.render());
+
+		assertEquals(expected, actual);
+
+		// rendering more than once produces the same output
+		assertEquals(expected, format(template.render()));
+	}
+
+	@Test
+	public void renderOverridesTest() throws IOException {
+
+		Map<String, String> variables = new LinkedHashMap<String, String>();
+		variables.put("base-color", "#222");
+		variables.put("the-border", "2px");
+
+		String expected = format(new CssParser(Syntax.LESS).parse(new CssLexer(
+			THEME.replace("#111;", "#222;").replace("1px", "2px"), Syntax.LESS)));
+
+		LessTemplate template = new CssParser(Syntax.LESS).parseTemplate(new CssLexer(THEME, Syntax.LESS));
+		String actual = format(template.render(variables));
+
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void renderOverrideReferencesTest() throws IOException {
+
+		Map<String, String> variables = new LinkedHashMap<String, String>();
+		variables.put("brand", "#010101");
+		variables.put("base-color", "@brand + #010101");
+
+		LessTemplate template = new CssParser(Syntax.LESS).parseTemplate(new CssLexer("@base-color: #111; a { color: @base-color; }", Syntax.LESS));
+		String actual = format(template.render(variables));
+
+		assertEquals("a{color:#020202;}", actual);
+	}
+
+	@Test
+	public void renderConcurrentTest() throws Exception {
+
+		final LessTemplate template = new CssParser(Syntax.LESS).parseTemplate(new CssLexer(THEME, Syntax.LESS));
+
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int i=0; i<32; i++) {
+				final Map<String, String> variables = new HashMap<String, String>();
+				variables.put("the-border", (i+1)+"px");
+
+				results.add(pool.submit(new Callable<String>() {
+					public String call() throws IOException {
+						return format(template.render(variables));
+					}
+				}));
+			}
+
+			for (int i=0; i<32; i++) {
+				String border = (i+1)+"px";
+				String actual = results.get(i).get();
+				assertTrue(actual, actual.contains("border-left:"+border+";"));
+			}
+
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static String format(StyleSheetNode stylesheet) throws IOException {
+		StringBuilder output = new StringBuilder();
+		new CssFormatter().write(output, stylesheet);
+		return output.toString();
+	}
+}
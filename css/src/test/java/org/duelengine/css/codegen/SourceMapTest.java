@@ -0,0 +1,127 @@
+package org.duelengine.css.codegen;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.duelengine.css.ast.StyleSheetNode;
+import org.duelengine.css.parsing.CssLexer;
+import org.duelengine.css.parsing.CssParser;
+import org.junit.Test;
+
+public class SourceMapTest {
+
+	@Test
+	public void encodeTest() throws IOException {
+
+		StringBuilder output = new StringBuilder();
+		SourceMap.encode(output, 0);
+		output.append(' ');
+		SourceMap.encode(output, 1);
+		output.append(' ');
+		SourceMap.encode(output, -1);
+		output.append(' ');
+		SourceMap.encode(output, 15);
+		output.append(' ');
+		SourceMap.encode(output, 16);
+		output.append(' ');
+		SourceMap.encode(output, -16);
+		output.append(' ');
+		SourceMap.encode(output, 1000);
+
+		assertEquals("A C D e gB hB w+B", output.toString());
+	}
+
+	@Test
+	public void writeCompactTest() throws IOException {
+
+		String input = "a{color:red}\n@media print{b{margin:0}}";
+
+		SourceMap sourceMap = new SourceMap();
+		sourceMap.setSource("foo.css");
+
+		StringBuilder output = new StringBuilder();
+		new CssFormatter().write(output, parse(input), null, sourceMap);
+
+		assertEquals("a{color:red;}@media print{b{margin:0;}}", output.toString());
+
+		StringBuilder json = new StringBuilder();
+		sourceMap.write(json, "foo.min.css");
+
+		assertEquals("{\"version\":3,\"file\":\"foo.min.css\",\"sources\":[\"foo.css\"],\"names\":[],\"mappings\":\"AAAA,EAAE,WACF,aAAa,EAAE\"}", json.toString());
+	}
+
+	@Test
+	public void writePrettyTest() throws IOException {
+
+		String input = "a { color: red; }\n\nb {\n  margin: 0;\n}";
+
+		SourceMap sourceMap = new SourceMap();
+		sourceMap.setSource("foo.css");
+
+		StringBuilder output = new StringBuilder();
+		new CssFormatter(new CodeGenSettings("\t", "\n", true)).write(output, parse(input), null, sourceMap);
+
+		assertEquals("a {\n\tcolor: red;\n}\nb {\n\tmargin: 0;\n}", output.toString());
+
+		StringBuilder mappings = new StringBuilder();
+		sourceMap.writeMappings(mappings);
+
+		// sources: a 0:0, color 0:4, b 2:0, margin 3:2
+		assertEquals("AAAA;CAAI;;AAEJ;CACE", mappings.toString());
+	}
+
+	@Test
+	public void multipleSourcesTest() throws IOException {
+
+		SourceMap sourceMap = new SourceMap();
+		StringBuilder output = new StringBuilder();
+		CssFormatter formatter = new CssFormatter();
+
+		sourceMap.setSource("a.css");
+		formatter.write(output, parse("a{color:red}"), null, sourceMap);
+		sourceMap.setSource("b.css");
+		formatter.write(output, parse("\nb{color:blue}"), null, sourceMap);
+		sourceMap.setSource("a.css");
+		formatter.write(output, parse("c{color:green}"), null, sourceMap);
+
+		assertEquals("a{color:red;}b{color:blue;}c{color:green;}", output.toString());
+		assertEquals(2, sourceMap.getSources().size());
+
+		StringBuilder mappings = new StringBuilder();
+		sourceMap.writeMappings(mappings);
+
+		assertEquals("AAAA,EAAE,WCCF,EAAE,YDDF,EAAE", mappings.toString());
+	}
+
+	@Test
+	public void streamMatchesTreeTest() throws IOException {
+
+		String input = "@import url(x.css);\na, b > c { color: red; margin: 0 auto; }\n@media print {\n  p { font-size: 12px; }\n}";
+
+		for (CodeGenSettings settings : new CodeGenSettings[] { new CodeGenSettings(), new CodeGenSettings("\t", "\n", false) }) {
+			SourceMap expected = new SourceMap();
+			expected.setSource("x.css");
+			StringBuilder expectedOutput = new StringBuilder();
+			new CssFormatter(settings).write(expectedOutput, parse(input), null, expected);
+
+			SourceMap actual = new SourceMap();
+			actual.setSource("x.css");
+			StringBuilder actualOutput = new StringBuilder();
+			new CssParser().parse(new CssLexer(input), new CssStreamFormatter(actualOutput, settings, actual));
+
+			assertEquals(expectedOutput.toString(), actualOutput.toString());
+
+			StringBuilder expectedJson = new StringBuilder();
+			expected.write(expectedJson, null);
+			StringBuilder actualJson = new StringBuilder();
+			actual.write(actualJson, null);
+
+			assertEquals(expectedJson.toString(), actualJson.toString());
+		}
+	}
+
+	private static StyleSheetNode parse(String input) throws IOException {
+		return new CssParser().parse(new CssLexer(input));
+	}
+}
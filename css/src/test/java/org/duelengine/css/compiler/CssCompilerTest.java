@@ -0,0 +1,313 @@
+package org.duelengine.css.compiler;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+import org.duelengine.css.codegen.CodeGenSettings;
+import org.duelengine.css.parsing.SyntaxException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CssCompilerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	// failure which ended a watcher thread
+	private final AtomicReference<IOException> watchError = new AtomicReference<IOException>();
+
+	@Test
+	public void readSourceTest() throws IOException {
+
+		File source = write("a.css", "\uFEFFa{content:\"\u00e9\u4e2d\"}");
+		assertEquals("a{content:\"\u00e9\u4e2d\"}", CssCompiler.readSource(source).toString());
+	}
+
+	@Test
+	public void readFileTest() throws IOException {
+
+		File small = write("small.css", "a{color:red}");
+		ByteBuffer bytes = CssCompiler.readFile(small, true);
+		// read onto the heap rather than mapped
+		assertTrue(bytes.hasArray());
+		assertEquals(small.length(), bytes.remaining());
+
+		// nothing holds the file open so it may be replaced immediately
+		write("small.css", "b{color:blue}");
+		assertTrue(small.delete());
+
+		StringBuilder text = new StringBuilder(CssCompiler.MAP_THRESHOLD+16);
+		while (text.length() < CssCompiler.MAP_THRESHOLD) {
+			text.append("a{color:red}\n");
+		}
+		File large = write("large.css", text.toString());
+		bytes = CssCompiler.readFile(large, true);
+		assertFalse(bytes.hasArray());
+		assertEquals(text.toString(), CssCompiler.decodeSource(bytes).toString());
+
+		// resident processes never map so the file stays free for editor saves
+		bytes = CssCompiler.readFile(large, false);
+		assertTrue(bytes.hasArray());
+		assertEquals(text.toString(), CssCompiler.decodeSource(bytes).toString());
+	}
+
+	@Test
+	public void hashFileTest() throws IOException {
+
+		File file = write("a.css", "a{color:red}");
+		assertEquals(BuildCache.hash(ByteBuffer.wrap("a{color:red}".getBytes(CssCompiler.UTF8))), BuildCache.hash(file));
+	}
+
+	@Test
+	public void gzipTest() throws IOException {
+
+		Settings settings = new Settings();
+		settings.setSource(folder.newFolder("in").getPath());
+		settings.setTarget(new File(folder.getRoot(), "out").getPath());
+		settings.setGzip(true);
+		settings.setSourceMap(true);
+
+		List<File> inputs = Arrays.asList(write("in/a.css", "a { color: red; }"));
+		File target = new File(folder.getRoot(), "out/a.css");
+		File gzip = CssCompiler.getGzipFile(target);
+		File map = CssCompiler.getSourceMapFile(target);
+
+		BuildCache cache = build(settings, inputs, null);
+		assertEquals(CssCompiler.readSource(target).toString(), gunzip(gzip));
+		assertTrue(map.isFile());
+
+		// deleted or edited siblings are regenerated though the source is unchanged
+		assertTrue(gzip.delete());
+		cache = build(settings, inputs, cache);
+		assertEquals(0, cache.getSkipped());
+		assertEquals(CssCompiler.readSource(target).toString(), gunzip(gzip));
+
+		write("out/a.css.map", "{}");
+		cache = build(settings, inputs, cache);
+		assertEquals(0, cache.getSkipped());
+		assertNotEquals("{}", CssCompiler.readSource(map).toString());
+
+		cache = build(settings, inputs, cache);
+		assertEquals(1, cache.getSkipped());
+	}
+
+	@Test
+	public void partialOutputTest() throws IOException {
+
+		Settings settings = new Settings();
+		settings.setSource(folder.newFolder("in").getPath());
+		settings.setTarget(new File(folder.getRoot(), "out").getPath());
+		settings.setGzip(true);
+		settings.setSourceMap(true);
+
+		List<File> inputs = Arrays.asList(write("in/a.css", "a{color:red}"));
+		File target = new File(folder.getRoot(), "out/a.css");
+		BuildCache cache = build(settings, inputs, null);
+		assertTrue(target.isFile());
+
+		// fails part way through streaming after some output is written
+		write("in/a.css", "a{color:red} b{content:\"unterminated}");
+		build(settings, inputs, cache);
+
+		assertFalse(target.exists());
+		assertFalse(CssCompiler.getGzipFile(target).exists());
+		assertFalse(CssCompiler.getSourceMapFile(target).exists());
+	}
+
+	@Test
+	public void parallelTest() throws IOException {
+
+		List<File> inputs = Arrays.asList(
+			write("in/x/a.less", "@c: red; a { color: @c; }"),
+			write("in/b.css", "b { content: \"unterminated }"),
+			write("in/y/a.less", "@c: blue; a { color: @c; }"),
+			write("in/c.less", "c { content: 'unterminated }"),
+			write("in/d.css", "d { color: green; }"),
+			write("in/e.less", "e { margin: 0 }"),
+			write("in/a.css", "a { margin: 1px; }"));
+
+		List<String> serialReports = new ArrayList<String>();
+		File serial = parallelBuild(inputs, "serial", 1, serialReports);
+
+		List<String> parallelReports = new ArrayList<String>();
+		File parallel = parallelBuild(inputs, "parallel", 4, parallelReports);
+
+		assertEquals(Arrays.asList("b.css", "c.less"), serialReports);
+		assertEquals(serialReports, parallelReports);
+
+		// sources sharing a target are compiled in input order so the last wins
+		assertEquals("a{margin:1px;}", CssCompiler.readSource(new File(serial, "a.css")).toString());
+		for (String name : new String[] { "a.css", "d.css", "e.css" }) {
+			assertEquals(CssCompiler.readSource(new File(serial, name)).toString(), CssCompiler.readSource(new File(parallel, name)).toString());
+		}
+		assertFalse(new File(parallel, "b.css").exists());
+		assertFalse(new File(parallel, "c.css").exists());
+	}
+
+	@Test
+	public void watchTest() throws Exception {
+
+		File target = new File(folder.getRoot(), "out");
+		Thread thread = startWatcher(new CssCompiler(), target);
+		try {
+			File output = new File(target, "a.css");
+			assertEquals("a{color:red;}", awaitOutput("in/a.less", "@c: red; a { color: @c; }", output, "a{color:red;}"));
+			// later saves are picked up by the same resident watcher
+			assertEquals("a{color:blue;}", awaitOutput("in/a.less", "@c: blue; a { color: @c; }", output, "a{color:blue;}"));
+
+		} finally {
+			stopWatcher(thread);
+		}
+	}
+
+	@Test
+	public void watchFailureTest() throws Exception {
+
+		final AtomicInteger failures = new AtomicInteger();
+		CssCompiler compiler = new CssCompiler() {
+			@Override
+			void build(Settings settings, List<File> inputFiles, CodeGenSettings formatSettings, BuildCache cache) throws IOException {
+				if (failures.getAndIncrement() == 0) {
+					// e.g. the editor still holds the file
+					throw new IOException("locked");
+				}
+				super.build(settings, inputFiles, formatSettings, cache);
+			}
+		};
+
+		File target = new File(folder.getRoot(), "out");
+		Thread thread = startWatcher(compiler, target);
+		try {
+			File output = new File(target, "a.css");
+			// the failed build does not end watch mode
+			assertEquals("a{color:red;}", awaitOutput("in/a.less", "@c: red; a { color: @c; }", output, "a{color:red;}"));
+			assertTrue(failures.get() > 1);
+
+		} finally {
+			stopWatcher(thread);
+		}
+	}
+
+	private Thread startWatcher(CssCompiler compiler, File target) throws IOException {
+		Settings settings = new Settings();
+		settings.setSource(folder.newFolder("in").getPath());
+		settings.setTarget(target.getPath());
+		settings.setWatch(true);
+
+		BuildCache cache = new BuildCache(settings.getCacheFile(), settings.getFingerprint(), false);
+		final SourceWatcher watcher = new SourceWatcher(compiler, settings, CssCompiler.getFormatSettings(settings), cache);
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					watcher.run();
+				} catch (IOException ex) {
+					watchError.set(ex);
+				}
+			}
+		};
+		thread.start();
+		return thread;
+	}
+
+	private void stopWatcher(Thread thread) throws InterruptedException {
+		thread.interrupt();
+		thread.join(10000);
+
+		assertFalse(thread.isAlive());
+		assertNull(watchError.get());
+	}
+
+	/**
+	 * Builds into a separate target, recording the sources reported as having errors
+	 */
+	private File parallelBuild(List<File> inputs, String name, int threads, final List<String> reports) throws IOException {
+		Settings settings = new Settings();
+		settings.setSource(new File(folder.getRoot(), "in").getPath());
+		settings.setTarget(new File(folder.getRoot(), name).getPath());
+		settings.setThreads(threads);
+
+		CssCompiler compiler = new CssCompiler() {
+			@Override
+			void reportSyntaxErrors(File inputFile, List<SyntaxException> errors, boolean verbose) {
+				if (errors != null) {
+					reports.add(inputFile.getName());
+				}
+			}
+		};
+		BuildCache cache = new BuildCache(settings.getCacheFile(), settings.getFingerprint(), false);
+		compiler.build(settings, inputs, CssCompiler.getFormatSettings(settings), cache);
+		return settings.getTarget();
+	}
+
+	/**
+	 * Builds with a fresh cache loaded from the manifest the previous build saved
+	 */
+	private static BuildCache build(Settings settings, List<File> inputs, BuildCache previous) throws IOException {
+		BuildCache cache = new BuildCache(settings.getCacheFile(), settings.getFingerprint(), false);
+		if (previous != null) {
+			cache.load();
+		}
+		new CssCompiler().build(settings, inputs, CssCompiler.getFormatSettings(settings), cache);
+		return cache;
+	}
+
+	private static String gunzip(File file) throws IOException {
+		InputStream stream = new GZIPInputStream(new FileInputStream(file));
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int count;
+			while ((count = stream.read(buffer)) >= 0) {
+				bytes.write(buffer, 0, count);
+			}
+			return new String(bytes.toByteArray(), CssCompiler.UTF8);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Saves the source until the watcher has written the expected output,
+	 * since the first save may land before the tree is registered
+	 */
+	private String awaitOutput(String path, String text, File output, String expected) throws Exception {
+		String actual = null;
+		for (int i=0; i<50 && !expected.equals(actual); i++) {
+			write(path, text);
+			Thread.sleep(200);
+
+			if (output.isFile()) {
+				actual = CssCompiler.readSource(output).toString();
+			}
+		}
+		return actual;
+	}
+
+	private File write(String path, String text) throws IOException {
+		File file = new File(folder.getRoot(), path);
+		file.getParentFile().mkdirs();
+		OutputStream stream = new FileOutputStream(file, false);
+		try {
+			stream.write(text.getBytes(CssCompiler.UTF8));
+		} finally {
+			stream.close();
+		}
+		return file;
+	}
+}
@@ -0,0 +1,283 @@
+package org.duelengine.css.compiler;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.duelengine.css.parsing.SyntaxException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class StylesheetCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static class CountingCache extends StylesheetCache {
+		private final AtomicInteger compiled = new AtomicInteger();
+		private final CountDownLatch release;
+
+		CountingCache(File root, int capacity, CountDownLatch release) {
+			super(new CssCompiler(), root, null, capacity);
+			this.release = release;
+		}
+
+		@Override
+		protected Entry compile(File source) throws IOException {
+			compiled.incrementAndGet();
+			if (release != null) {
+				try {
+					release.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return super.compile(source);
+		}
+	}
+
+	@Test
+	public void getCachedTest() throws IOException {
+
+		File source = write("theme.less", "@c: #111; a { color: @c; }");
+		CountingCache cache = new CountingCache(folder.getRoot(), 4, null);
+
+		StylesheetCache.Entry first = cache.get(source);
+		assertEquals("a{color:#111;}", new String(first.getContent(), CssCompiler.UTF8));
+		assertSame(first, cache.get(source));
+		assertEquals(1, cache.compiled.get());
+
+		// modified sources are recompiled
+		write("theme.less", "@c: #222; a { color: @c; }");
+		source.setLastModified(source.lastModified()+2000);
+
+		StylesheetCache.Entry second = cache.get(source);
+		assertEquals("a{color:#222;}", new String(second.getContent(), CssCompiler.UTF8));
+		assertFalse(first.getETag().equals(second.getETag()));
+		assertEquals(2, cache.compiled.get());
+	}
+
+	@Test
+	public void getEvictsTest() throws IOException {
+
+		CountingCache cache = new CountingCache(folder.getRoot(), 2, null);
+		File a = write("a.css", "a{}");
+		File b = write("b.css", "b{}");
+		File c = write("c.css", "c{}");
+
+		cache.get(a);
+		cache.get(b);
+		cache.get(a);
+		cache.get(c);
+		assertEquals(2, cache.size());
+
+		// b was least recently used
+		cache.get(a);
+		assertEquals(3, cache.compiled.get());
+		cache.get(b);
+		assertEquals(4, cache.compiled.get());
+	}
+
+	@Test
+	public void getConcurrentTest() throws Exception {
+
+		final File source = write("theme.less", "@c: #111; a { color: @c; }");
+		CountDownLatch release = new CountDownLatch(1);
+		final CountingCache cache = new CountingCache(folder.getRoot(), 4, release);
+
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<StylesheetCache.Entry>> results = new ArrayList<Future<StylesheetCache.Entry>>();
+			for (int i=0; i<8; i++) {
+				results.add(pool.submit(new Callable<StylesheetCache.Entry>() {
+					public StylesheetCache.Entry call() throws IOException {
+						return cache.get(source);
+					}
+				}));
+			}
+
+			// give the requests time to queue behind the first compilation
+			Thread.sleep(100);
+			release.countDown();
+
+			StylesheetCache.Entry expected = results.get(0).get();
+			for (Future<StylesheetCache.Entry> result : results) {
+				assertSame(expected, result.get());
+			}
+			assertEquals(1, cache.compiled.get());
+
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void getFailedTest() throws IOException {
+
+		final AtomicInteger failures = new AtomicInteger(1);
+		CountingCache cache = new CountingCache(folder.getRoot(), 4, null) {
+			@Override
+			protected Entry compile(File source) throws IOException {
+				if (failures.getAndDecrement() > 0) {
+					super.compiled.incrementAndGet();
+					throw new IOException("transient");
+				}
+				return super.compile(source);
+			}
+		};
+
+		// transient failures are retried on the next request
+		File source = write("a.css", "a { color: red; }");
+		try {
+			cache.get(source);
+			fail("expected IOException");
+		} catch (IOException ex) {
+			assertEquals("transient", ex.getMessage());
+		}
+		assertEquals(0, cache.size());
+		assertEquals("a{color:red;}", new String(cache.get(source).getContent(), CssCompiler.UTF8));
+		assertEquals(2, cache.compiled.get());
+
+		// syntax errors recur until the source changes
+		File broken = write("broken.css", "a { content: \"x }");
+		for (int i=0; i<2; i++) {
+			try {
+				cache.get(broken);
+				fail("expected SyntaxException");
+			} catch (SyntaxException ex) {
+				// expected
+			}
+		}
+		assertEquals(3, cache.compiled.get());
+	}
+
+	@Test
+	public void resolveTest() throws IOException {
+
+		write("a.css", "a{}");
+		StylesheetCache cache = new StylesheetCache(new CssCompiler(), folder.newFolder("root"), null, 4);
+		write("root/b.css", "b{}");
+
+		assertNotNull(cache.resolve("/b.css"));
+		assertNull(cache.resolve("/missing.css"));
+		assertNull(cache.resolve("/../a.css"));
+	}
+
+	@Test
+	public void handlerTest() throws IOException {
+
+		write("theme.less", "@c: #111; a { color: @c; }");
+		write("broken.css", "a { content: \"x }");
+		StylesheetCache cache = new StylesheetCache(new CssCompiler(), folder.getRoot(), null, 4);
+
+		HttpServer server = CssHttpHandler.start(new InetSocketAddress("127.0.0.1", 0), cache);
+		try {
+			String base = "http://127.0.0.1:"+server.getAddress().getPort();
+
+			HttpURLConnection conn = (HttpURLConnection)new URL(base+"/theme.css").openConnection();
+			assertEquals(200, conn.getResponseCode());
+			assertEquals("a{color:#111;}", read(conn.getInputStream()));
+			String etag = conn.getHeaderField("ETag");
+			assertNotNull(etag);
+
+			conn = (HttpURLConnection)new URL(base+"/theme.css").openConnection();
+			conn.setRequestProperty("If-None-Match", etag);
+			assertEquals(304, conn.getResponseCode());
+
+			conn = (HttpURLConnection)new URL(base+"/missing.css").openConnection();
+			assertEquals(404, conn.getResponseCode());
+
+			conn = (HttpURLConnection)new URL(base+"/broken.css").openConnection();
+			assertEquals(500, conn.getResponseCode());
+
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	public void handlerFailureTest() throws IOException {
+
+		write("undeclared.less", "a { color: @missing; }");
+		write("locked.css", "a { color: red; }");
+		StylesheetCache cache = new StylesheetCache(new CssCompiler(), folder.getRoot(), null, 4) {
+			@Override
+			protected Entry compile(File source) throws IOException {
+				if (source.getName().equals("locked.css")) {
+					throw new IOException("locked");
+				}
+				return super.compile(source);
+			}
+		};
+
+		HttpServer server = CssHttpHandler.start(new InetSocketAddress("127.0.0.1", 0), cache);
+		try {
+			String base = "http://127.0.0.1:"+server.getAddress().getPort();
+
+			// failures other than syntax errors still produce a response
+			HttpURLConnection conn = (HttpURLConnection)new URL(base+"/undeclared.css").openConnection();
+			assertEquals(500, conn.getResponseCode());
+
+			conn = (HttpURLConnection)new URL(base+"/locked.css").openConnection();
+			assertEquals(500, conn.getResponseCode());
+
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	public void matchesTest() {
+
+		assertTrue(CssHttpHandler.matches("\"abc\"", "\"abc\""));
+		assertTrue(CssHttpHandler.matches("\"xyz\", W/\"abc\"", "\"abc\""));
+		assertTrue(CssHttpHandler.matches("*", "\"abc\""));
+		assertFalse(CssHttpHandler.matches("\"xyz\"", "\"abc\""));
+		assertFalse(CssHttpHandler.matches(null, "\"abc\""));
+	}
+
+	private File write(String path, String text) throws IOException {
+		File file = new File(folder.getRoot(), path);
+		file.getParentFile().mkdirs();
+		OutputStream stream = new FileOutputStream(file, false);
+		try {
+			stream.write(text.getBytes(CssCompiler.UTF8));
+		} finally {
+			stream.close();
+		}
+		return file;
+	}
+
+	private static String read(InputStream stream) throws IOException {
+		try {
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			byte[] chunk = new byte[1024];
+			int count;
+			while ((count = stream.read(chunk)) > 0) {
+				buffer.write(chunk, 0, count);
+			}
+			return new String(buffer.toByteArray(), CssCompiler.UTF8);
+		} finally {
+			stream.close();
+		}
+	}
+}
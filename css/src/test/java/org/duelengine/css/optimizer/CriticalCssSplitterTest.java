@@ -0,0 +1,135 @@
+package org.duelengine.css.optimizer;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.duelengine.css.ast.AtRuleNode;
+import org.duelengine.css.ast.ContainerNode;
+import org.duelengine.css.ast.CssNode;
+import org.duelengine.css.ast.RuleSetNode;
+import org.duelengine.css.ast.SelectorNode;
+import org.duelengine.css.ast.StyleSheetNode;
+import org.duelengine.css.codegen.CssFormatter;
+import org.duelengine.css.parsing.CssLexer;
+import org.duelengine.css.parsing.CssParser;
+import org.junit.Test;
+
+public class CriticalCssSplitterTest {
+
+	private static final String ABOVE_THE_FOLD = ".a #main h1 b";
+
+	@Test
+	public void splitSelectorsTest() throws IOException {
+
+		String[] halves = split(".a{x:1} .q,.a b{color:red} .b{color:blue} *{margin:0}");
+		assertEquals(".a{x:1;}.a b{color:red;}*{margin:0;}", halves[0]);
+		assertEquals(".q{color:red;}.b{color:blue;}", halves[1]);
+	}
+
+	@Test
+	public void prologueTest() throws IOException {
+
+		String[] halves = split("@charset \"utf-8\"; @import url(a.css); .a{x:1} .q{y:1}");
+		assertEquals("@charset \"utf-8\";.a{x:1;}", halves[0]);
+		assertEquals("@charset \"utf-8\";@import url(a.css);.q{y:1;}", halves[1]);
+	}
+
+	@Test
+	public void mediaTest() throws IOException {
+
+		String[] halves = split("@media (min-width:10px){.a{x:1} .q{y:1}} @media print{.q{y:1}} @page :first{margin:0}");
+		assertEquals("@media (min-width:10px){.a{x:1;}}", halves[0]);
+		assertEquals("@media (min-width:10px){.q{y:1;}}@media print{.q{y:1;}}@page :first{margin:0;}", halves[1]);
+	}
+
+	@Test
+	public void fontFaceTest() throws IOException {
+
+		String input = "@import url(a.css); h1{font:bold 2em Open Sans,serif} .q{font-family:Other}"+
+			" @font-face{font-family:\"Open Sans\";src:url(a.woff)} @font-face{font-family:Other;src:url(b.woff)}";
+
+		String[] halves = split(input);
+		assertEquals("@font-face{font-family:\"Open Sans\";src:url(a.woff);}h1{font:bold 2em Open Sans,serif;}", halves[0]);
+		assertEquals("@import url(a.css);@font-face{font-family:Other;src:url(b.woff);}.q{font-family:Other;}", halves[1]);
+	}
+
+	@Test
+	public void keyframesTest() throws IOException {
+
+		String[] halves = split("@keyframes spin{to{opacity:1}} @keyframes fade{to{opacity:0}} .a{animation:spin 1s} .q{animation-name:fade}");
+		assertEquals("@keyframes spin{to{opacity:1;}}.a{animation:spin 1s;}", halves[0]);
+		assertEquals("@keyframes fade{to{opacity:0;}}.q{animation-name:fade;}", halves[1]);
+	}
+
+	@Test
+	public void cascadeOrderTest() throws IOException {
+
+		// the deferred .q would otherwise override .a for elements below the fold
+		String[] halves = split(".q{margin:0} .a{margin-top:1px} .a{color:red}");
+		assertEquals(".a{margin-top:1px;}.a{color:red;}", halves[0]);
+		assertEquals(".q{margin:0;}.a{margin-top:1px;}", halves[1]);
+	}
+
+	@Test
+	public void sourceUnchangedTest() throws IOException {
+
+		String input = "@media print{.a,.q{x:1}} @font-face{font-family:A}";
+		StyleSheetNode stylesheet = new CssParser().parse(new CssLexer(input));
+		CriticalCssSplitter.parse(ABOVE_THE_FOLD).split(stylesheet);
+
+		StringBuilder output = new StringBuilder();
+		new CssFormatter().write(output, stylesheet, null);
+		assertEquals("@media print{.a,.q{x:1;}}@font-face{font-family:A;}", output.toString());
+	}
+
+	@Test
+	public void sourceParentsTest() throws IOException {
+
+		String input = "@charset \"utf-8\"; .a,.q{x:1} .a{y:1} @media print{.a,.q{x:1} .q{y:1}} @font-face{font-family:A} /* c */";
+		StyleSheetNode stylesheet = new CssParser().parse(new CssLexer(input));
+
+		Map<CssNode, ContainerNode> expected = new IdentityHashMap<CssNode, ContainerNode>();
+		addParents(stylesheet, expected);
+		CriticalCssSplitter.parse(ABOVE_THE_FOLD).split(stylesheet);
+
+		Map<CssNode, ContainerNode> actual = new IdentityHashMap<CssNode, ContainerNode>();
+		addParents(stylesheet, actual);
+		assertEquals(expected.size(), actual.size());
+		for (Map.Entry<CssNode, ContainerNode> parent : expected.entrySet()) {
+			assertSame(parent.getValue(), parent.getKey().getParent());
+		}
+	}
+
+	private static void addParents(ContainerNode container, Map<CssNode, ContainerNode> parents) {
+		if (container instanceof RuleSetNode) {
+			for (SelectorNode selector : ((RuleSetNode)container).getSelectors()) {
+				parents.put(selector, selector.getParent());
+			}
+		}
+		if (container instanceof AtRuleNode && ((AtRuleNode)container).getBlock() != null) {
+			addParents(((AtRuleNode)container).getBlock(), parents);
+		}
+		for (CssNode child : container.getChildren()) {
+			parents.put(child, child.getParent());
+			if (child instanceof ContainerNode) {
+				addParents((ContainerNode)child, parents);
+			}
+		}
+	}
+
+	private static String[] split(String input) throws IOException {
+		StyleSheetNode stylesheet = new CssParser().parse(new CssLexer(input));
+		CriticalCssSplitter.Split split = CriticalCssSplitter.parse(ABOVE_THE_FOLD).split(stylesheet);
+
+		StringBuilder critical = new StringBuilder();
+		new CssFormatter().write(critical, split.getCritical(), null);
+
+		StringBuilder deferred = new StringBuilder();
+		new CssFormatter().write(deferred, split.getDeferred(), null);
+
+		return new String[] { critical.toString(), deferred.toString() };
+	}
+}
@@ -0,0 +1,87 @@
+package org.duelengine.css.optimizer;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.duelengine.css.ast.StyleSheetNode;
+import org.duelengine.css.codegen.CssFormatter;
+import org.duelengine.css.parsing.CssLexer;
+import org.duelengine.css.parsing.CssParser;
+import org.duelengine.css.parsing.CssParser.Syntax;
+import org.junit.Test;
+
+public class OverriddenDeclarationRemoverTest {
+
+	@Test
+	public void removeOverriddenTest() throws IOException {
+
+		assertEquals("a{margin:0;color:blue;}", optimize("a{color:red;margin:0;color:blue}"));
+		assertEquals("a{margin:10px 2em;}", optimize("a{margin:0;margin:10px 2em}"));
+		assertEquals("a{color:blue;}", optimize("a{COLOR:red;color:blue}"));
+	}
+
+	@Test
+	public void removeDuplicateTest() throws IOException {
+
+		assertEquals("a{border:1px solid red;}", optimize("a{border:1px solid red;border:1px solid red}"));
+		assertEquals("a{width:calc(2px);}", optimize("a{width:calc(1px);width:calc(2px)}"));
+		assertEquals("a{background:url(b.png) no-repeat;}", optimize("a{background:url(a.png);background:url(b.png) no-repeat}"));
+	}
+
+	@Test
+	public void importantTest() throws IOException {
+
+		assertEquals("a{color:red!important;}", optimize("a{color:red !important;color:blue}"));
+		assertEquals("a{color:green!important;}", optimize("a{color:red !important;color:blue;color:green !important}"));
+	}
+
+	@Test
+	public void fallbackTest() throws IOException {
+
+		String input = "a{display:-webkit-box;display:-ms-flexbox;display:flex}";
+		assertEquals("a{display:-webkit-box;display:-ms-flexbox;display:flex;}", optimize(input));
+
+		assertEquals("a{height:100%;height:100vh;}", optimize("a{height:100%;height:100vh}"));
+		assertEquals("a{color:red;color:rgba(0,0,0,0.5);}", optimize("a{color:red;color:rgba(0,0,0,.5)}"));
+		assertEquals("a{background:red;background:url(b.png);}", optimize("a{background:red;background:url(b.png)}"));
+		assertEquals("a{position:relative;position:sticky;}", optimize("a{position:relative;position:sticky}"));
+	}
+
+	@Test
+	public void customPropertyTest() throws IOException {
+
+		assertEquals("a{--X:2;--x:3;}", optimize("a{--x:1;--X:2;--x:3}"));
+	}
+
+	@Test
+	public void nestedBlocksTest() throws IOException {
+
+		assertEquals("@media print{a{width:2px;}}", optimize("@media print{a{width:1px;width:2px}}"));
+
+		String input = "@font-face{src:url(a.eot);src:url(a.woff) format(\"woff\")}";
+		assertEquals("@font-face{src:url(a.eot);src:url(a.woff) format(\"woff\");}", optimize(input));
+	}
+
+	@Test
+	public void mixinTest() throws IOException {
+
+		String input = ".m{color:red;margin:0} a{.m;color:blue}";
+
+		StyleSheetNode stylesheet = new CssParser(Syntax.LESS).parse(new CssLexer(input, Syntax.LESS));
+		new OverriddenDeclarationRemover().optimize(stylesheet);
+
+		StringBuilder output = new StringBuilder();
+		new CssFormatter().write(output, stylesheet, null);
+		assertEquals(".m{color:red;margin:0;}a{margin:0;color:blue;}", output.toString());
+	}
+
+	private static String optimize(String input) throws IOException {
+		StyleSheetNode stylesheet = new CssParser().parse(new CssLexer(input));
+		new OverriddenDeclarationRemover().optimize(stylesheet);
+
+		StringBuilder output = new StringBuilder();
+		new CssFormatter().write(output, stylesheet, null);
+		return output.toString();
+	}
+}
@@ -0,0 +1,134 @@
+package org.duelengine.css.optimizer;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.duelengine.css.ast.StyleSheetNode;
+import org.duelengine.css.codegen.CssFormatter;
+import org.duelengine.css.parsing.CssLexer;
+import org.duelengine.css.parsing.CssParser;
+import org.junit.Test;
+
+public class RuleSetMergerTest {
+
+	@Test
+	public void mergeSelectorsTest() throws IOException {
+
+		assertEquals("a{color:red;margin:0;}", optimize("a{color:red} a{margin:0}"));
+	}
+
+	@Test
+	public void mergeBodiesTest() throws IOException {
+
+		assertEquals("a,b{color:red;}", optimize("a{color:red} b{color:red}"));
+		assertEquals("a,b{color:red;}", optimize("a,b{color:red} b{color:red}"));
+	}
+
+	@Test
+	public void mergeAcrossCommentTest() throws IOException {
+
+		assertEquals("a,b{color:red;}", optimize("a{color:red} /* b */ b{color:red}"));
+	}
+
+	@Test
+	public void mergeNonAdjacentTest() throws IOException {
+
+		// b does not touch padding so the later a may move up
+		assertEquals("a{color:red;padding:0;}b{margin:0;}", optimize("a{color:red} b{margin:0} a{padding:0}"));
+		assertEquals("a,c{color:red;}b{margin:0;}", optimize("a{color:red} b{margin:0} c{color:red}"));
+	}
+
+	@Test
+	public void cascadeOrderTest() throws IOException {
+
+		String input = "a{color:red} b{color:blue} a{color:green}";
+		assertEquals("a{color:red;}b{color:blue;}a{color:green;}", optimize(input));
+
+		// shorthands and longhands override one another
+		input = "a{margin:0} b{margin-left:1px} a{margin-top:2px}";
+		assertEquals("a{margin:0;}b{margin-left:1px;}a{margin-top:2px;}", optimize(input));
+
+		input = "a{top:0} b{inset:1px} a{left:0}";
+		assertEquals("a{top:0;}b{inset:1px;}a{left:0;}", optimize(input));
+
+		input = "a{color:red} b{-webkit-color:blue} c{color:red}";
+		assertEquals("a{color:red;}b{-webkit-color:blue;}c{color:red;}", optimize(input));
+
+		input = "b{color:red} a{all:unset} b{color:red}";
+		assertEquals("b{color:red;}a{all:unset;}b{color:red;}", optimize(input));
+	}
+
+	@Test
+	public void atRuleBarrierTest() throws IOException {
+
+		String input = "a{x:1} @media print{p{y:1} q{y:1}} a{z:1}";
+		assertEquals("a{x:1;}@media print{p,q{y:1;}}a{z:1;}", optimize(input));
+
+		input = "@keyframes k{from{opacity:1} to{opacity:1}}";
+		assertEquals("@keyframes k{from{opacity:1;}to{opacity:1;}}", optimize(input));
+	}
+
+	@Test
+	public void vendorSelectorTest() throws IOException {
+
+		String input = "a::-moz-selection{color:red} a::selection{color:red}";
+		assertEquals("a::-moz-selection{color:red;}a::selection{color:red;}", optimize(input));
+
+		input = "a:-ms-input-placeholder{color:red} b{color:red}";
+		assertEquals("a:-ms-input-placeholder{color:red;}b{color:red;}", optimize(input));
+	}
+
+	@Test
+	public void newerSelectorTest() throws IOException {
+
+		String input = "a:focus-visible{color:red}b{color:red}";
+		assertEquals("a:focus-visible{color:red;}b{color:red;}", optimize(input));
+
+		input = "a{color:red}b:is(.x,.y){color:red}";
+		assertEquals("a{color:red;}b:is(.x,.y){color:red;}", optimize(input));
+
+		input = "a:has(b){color:red}input::placeholder{color:red}";
+		assertEquals("a:has(b){color:red;}input::placeholder{color:red;}", optimize(input));
+
+		input = "a:focus-within{color:red}b:where(.x){color:red}";
+		assertEquals("a:focus-within{color:red;}b:where(.x){color:red;}", optimize(input));
+
+		// a selector list within negation is Selectors Level 4
+		input = "a:not(.x,.y){color:red}b{color:red}";
+		assertEquals("a:not(.x,.y){color:red;}b{color:red;}", optimize(input));
+	}
+
+	@Test
+	public void baselineSelectorTest() throws IOException {
+
+		String input = "a:hover,a:focus{color:red}li:first-child{color:red}p::first-line{color:red}";
+		assertEquals("a:hover,a:focus,li:first-child,p::first-line{color:red;}", optimize(input));
+
+		input = "li:nth-child(2n+1){color:red}a:not(.x){color:red}a:HOVER{color:red}";
+		assertEquals("li:nth-child(2n+1),a:not(.x),a:HOVER{color:red;}", optimize(input));
+	}
+
+	@Test
+	public void linearTest() throws IOException {
+
+		StringBuilder input = new StringBuilder();
+		StringBuilder expected = new StringBuilder();
+		for (int i=0; i<20000; i++) {
+			input.append(".a").append(i).append("{width:").append(i).append("px}");
+			input.append(".b").append(i).append("{width:").append(i).append("px}");
+			expected.append(".a").append(i).append(",.b").append(i).append("{width:").append((i == 0) ? "0" : i+"px").append(";}");
+		}
+
+		assertEquals(expected.toString(), optimize(input.toString()));
+	}
+
+	private static String optimize(String input) throws IOException {
+		StyleSheetNode stylesheet = new CssParser().parse(new CssLexer(input));
+		new RuleSetMerger().optimize(stylesheet);
+
+		StringBuilder output = new StringBuilder();
+		new CssFormatter().write(output, stylesheet, null);
+		return output.toString();
+	}
+}
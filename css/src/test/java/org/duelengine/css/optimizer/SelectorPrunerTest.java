@@ -0,0 +1,86 @@
+package org.duelengine.css.optimizer;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.duelengine.css.ast.StyleSheetNode;
+import org.duelengine.css.codegen.CssFormatter;
+import org.duelengine.css.parsing.CssLexer;
+import org.duelengine.css.parsing.CssParser;
+import org.junit.Test;
+
+public class SelectorPrunerTest {
+
+	private static final String INVENTORY = ".a .b #main a div .a:b";
+
+	@Test
+	public void rightmostCompoundTest() throws IOException {
+
+		assertEquals(".c a{x:1;}p>a{x:1;}DIV{x:1;}", optimize("a b{x:1} a .c{x:1} .c a{x:1} p>a{x:1} DIV{x:1}"));
+		assertEquals(".a{x:1;}", optimize(".a{x:1} .a.z{x:1} div.z{x:1} p.a{x:1}"));
+	}
+
+	@Test
+	public void selectorListTest() throws IOException {
+
+		assertEquals(".a,#main{x:1;}", optimize(".q,.a,#other,#main{x:1} .q,.z{y:1}"));
+	}
+
+	@Test
+	public void pseudoTest() throws IOException {
+
+		String input = ".a:not(.z) .b:hover{x:1} .a::before{x:1} .q::before{x:1} a::-moz-selection{x:1} .x:nth-child(2n+1).b{x:1}";
+		assertEquals(".a:not(.z) .b:hover{x:1;}.a::before{x:1;}a::-moz-selection{x:1;}", optimize(input));
+	}
+
+	@Test
+	public void keptTest() throws IOException {
+
+		String input = "*{x:1} [type=x]{x:1} :root{x:1} a[href]{x:1} svg|p{x:1} .a\\:b{x:1}";
+		assertEquals("*{x:1;}[type=x]{x:1;}:root{x:1;}a[href]{x:1;}svg|p{x:1;}.a\\:b{x:1;}", optimize(input));
+	}
+
+	@Test
+	public void atRuleTest() throws IOException {
+
+		String input = "@media print{.q{x:1}} @media screen{.a{x:1} .q{y:1}} @keyframes k{from{x:1}} @font-face{src:url(a)}";
+		assertEquals("@media screen{.a{x:1;}}@keyframes k{from{x:1;}}@font-face{src:url(a);}", optimize(input));
+	}
+
+	@Test
+	public void inventoryTest() throws IOException {
+
+		SelectorPruner pruner = new SelectorPruner(Arrays.asList("a"), Collections.<String>emptyList(), Arrays.asList("P"));
+
+		StyleSheetNode stylesheet = new CssParser().parse(new CssLexer("p.a{x:1} p.b{x:1} #a{x:1}"));
+		pruner.optimize(stylesheet);
+
+		StringBuilder output = new StringBuilder();
+		new CssFormatter().write(output, stylesheet, null);
+		assertEquals("p.a{x:1;}", output.toString());
+	}
+
+	@Test
+	public void linearTest() throws IOException {
+
+		StringBuilder input = new StringBuilder();
+		for (int i=0; i<20000; i++) {
+			input.append(".u").append(i).append(" p,.z").append(i).append("{x:1}");
+		}
+		input.append(".a{x:1}");
+
+		assertEquals(".a{x:1;}", optimize(input.toString()));
+	}
+
+	private static String optimize(String input) throws IOException {
+		StyleSheetNode stylesheet = new CssParser().parse(new CssLexer(input));
+		SelectorPruner.parse(INVENTORY).optimize(stylesheet);
+
+		StringBuilder output = new StringBuilder();
+		new CssFormatter().write(output, stylesheet, null);
+		return output.toString();
+	}
+}
@@ -0,0 +1,121 @@
+package org.duelengine.css.optimizer;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.duelengine.css.ast.StyleSheetNode;
+import org.duelengine.css.codegen.CssFormatter;
+import org.duelengine.css.parsing.CssLexer;
+import org.duelengine.css.parsing.CssParser;
+import org.junit.Test;
+
+public class ShorthandCollapserTest {
+
+	@Test
+	public void boxTest() throws IOException {
+
+		assertEquals("a{padding:0;}", optimize("a{padding-top:0;padding-right:0;padding-bottom:0;padding-left:0}"));
+		assertEquals("a{margin:1px 2px;}", optimize("a{margin-top:1px;margin-right:2px;margin-bottom:1px;margin-left:2px}"));
+		assertEquals("a{margin:1px 2px 3px;}", optimize("a{margin-top:1px;margin-right:2px;margin-bottom:3px;margin-left:2px}"));
+		assertEquals("a{margin:1px 2px 3px 4px;}", optimize("a{margin-top:1px;margin-right:2px;margin-bottom:3px;margin-left:4px}"));
+	}
+
+	@Test
+	public void borderTest() throws IOException {
+
+		String input = "a{border-top-width:1px;border-right-width:1px;border-bottom-width:1px;border-left-width:1px;"+
+			"border-top-style:solid;border-right-style:solid;border-bottom-style:solid;border-left-style:solid}";
+		assertEquals("a{border-width:1px;border-style:solid;}", optimize(input));
+
+		input = "a{border-top-color:#ff0000;border-right-color:red;border-bottom-color:#f00;border-left-color:red}";
+		assertEquals("a{border-color:#F00;}", optimize(input));
+
+		input = "a{border-top-color:transparent;border-right-color:#000;border-bottom-color:transparent;border-left-color:#000}";
+		assertEquals("a{border-color:transparent #000;}", optimize(input));
+	}
+
+	@Test
+	public void positionTest() throws IOException {
+
+		// the shorthand takes the place of the last longhand
+		String input = "a{margin-top:1px;color:red;margin-right:2px;margin-bottom:3px;margin-left:4px}";
+		assertEquals("a{color:red;margin:1px 2px 3px 4px;}", optimize(input));
+	}
+
+	@Test
+	public void incompleteTest() throws IOException {
+
+		String input = "a{margin-top:1px;margin-right:2px;margin-bottom:3px}";
+		assertEquals("a{margin-top:1px;margin-right:2px;margin-bottom:3px;}", optimize(input));
+
+		input = "a{margin-top:1px;margin-right:2px;margin-top:3px;margin-bottom:3px;margin-left:4px}";
+		assertEquals("a{margin-top:1px;margin-right:2px;margin-top:3px;margin-bottom:3px;margin-left:4px;}", optimize(input));
+
+		assertEquals("a{background-color:red;background-image:none;}", optimize("a{background-color:red;background-image:none}"));
+	}
+
+	@Test
+	public void interveningTest() throws IOException {
+
+		String input = "a{margin-top:1px;margin-right:2px;margin:0;margin-bottom:3px;margin-left:4px}";
+		assertEquals("a{margin-top:1px;margin-right:2px;margin:0;margin-bottom:3px;margin-left:4px;}", optimize(input));
+	}
+
+	@Test
+	public void importantTest() throws IOException {
+
+		String input = "a{margin-top:1px !important;margin-right:2px;margin-bottom:3px;margin-left:4px}";
+		assertEquals("a{margin-top:1px!important;margin-right:2px;margin-bottom:3px;margin-left:4px;}", optimize(input));
+
+		input = "a{margin-top:1px !important;margin-right:2px !important;margin-bottom:1px !important;margin-left:2px !important}";
+		assertEquals("a{margin:1px 2px!important;}", optimize(input));
+	}
+
+	@Test
+	public void keywordTest() throws IOException {
+
+		String input = "a{margin-top:1px;margin-right:inherit;margin-bottom:3px;margin-left:4px}";
+		assertEquals("a{margin-top:1px;margin-right:inherit;margin-bottom:3px;margin-left:4px;}", optimize(input));
+	}
+
+	@Test
+	public void backgroundTest() throws IOException {
+
+		String input = "a{background-color:red;background-image:none;background-repeat:no-repeat;background-attachment:scroll;"+
+			"background-position:0 0;background-size:auto;background-origin:padding-box;background-clip:border-box}";
+		assertEquals("a{background:none 0 0/auto no-repeat scroll padding-box border-box red;}", optimize(input));
+	}
+
+	@Test
+	public void fontTest() throws IOException {
+
+		String input = "a{font-style:italic;font-variant:normal;font-weight:bold;font-stretch:normal;"+
+			"font-size:12px;line-height:1.5;font-family:Arial,sans-serif}";
+		assertEquals("a{font:italic normal bold normal 12px/1.5 Arial,sans-serif;}", optimize(input));
+	}
+
+	@Test
+	public void fontResetTest() throws IOException {
+
+		// font also resets font-kerning so the earlier declaration must survive
+		String input = "a{font-kerning:none;font-style:italic;font-variant:normal;font-weight:bold;font-stretch:normal;"+
+			"font-size:12px;line-height:1.5;font-family:Arial}";
+		assertEquals("a{font-kerning:none;font-style:italic;font-variant:normal;font-weight:bold;font-stretch:normal;"+
+			"font-size:12px;line-height:1.5;font-family:Arial;}", optimize(input));
+
+		// declared after the shorthand it still applies
+		input = "a{font-style:italic;font-variant:normal;font-weight:bold;font-stretch:normal;"+
+			"font-size:12px;line-height:1.5;font-family:Arial;font-kerning:none}";
+		assertEquals("a{font:italic normal bold normal 12px/1.5 Arial;font-kerning:none;}", optimize(input));
+	}
+
+	private static String optimize(String input) throws IOException {
+		StyleSheetNode stylesheet = new CssParser().parse(new CssLexer(input));
+		new ShorthandCollapser().optimize(stylesheet);
+
+		StringBuilder output = new StringBuilder();
+		new CssFormatter().write(output, stylesheet, null);
+		return output.toString();
+	}
+}
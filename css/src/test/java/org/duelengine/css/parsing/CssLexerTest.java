@@ -2,6 +2,11 @@ package org.duelengine.css.parsing;
 
 import static org.junit.Assert.*;
 
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.duelengine.css.parsing.CssParser.Syntax;
 import org.junit.*;
 
@@ -1501,6 +1506,175 @@ public class CssLexerTest {
 		assertArrayEquals(expected, actual);
 	}
 
+	@Test
+	public void bufferMatchesReaderTest() {
+
+		String input =
+			"/* header */\n"+
+			"a.foo:hover, #bar > li {\n"+
+			"\tcolor : red ;\r\n"+
+			"\tbackground: url(\"x.png\") -1.5em .5em !important;\r"+
+			"}\n"+
+			"@media screen { p::first-line { margin: 0 auto } }";
+
+		List<CssToken> expected = new CssLexer(new StringReader(input)).toList();
+		List<CssToken> actual = new CssLexer(input.toCharArray(), 0, input.length(), null).toList();
+
+		assertArrayEquals(expected.toArray(), actual.toArray());
+		for (int i=0; i<expected.size(); i++) {
+			assertEquals(expected.get(i).getLine(), actual.get(i).getLine());
+			assertEquals(expected.get(i).getColumn(), actual.get(i).getColumn());
+		}
+	}
+
+	@Test
+	public void bufferOffsetTest() {
+
+		String input = "xxxx a { color: red }yyyy";
+
+		Object[] expected = {
+				CssToken.value("a"),
+				CssToken.blockBegin(),
+				CssToken.value("color"),
+				CssToken.operator(":"),
+				CssToken.color("red"),
+				CssToken.blockEnd()
+			};
+
+		CharBuffer buffer = CharBuffer.wrap(input.toCharArray(), 4, input.length()-8);
+		List<CssToken> actual = new CssLexer(buffer).toList();
+
+		assertArrayEquals(expected, actual.toArray());
+		assertEquals(1, actual.get(0).getIndex());
+		assertEquals(16, actual.get(5).getIndex());
+	}
+
+	@Test
+	public void bufferLineCommentCRLFTest() {
+
+		String input = "// line one\r\n// line two\r\na{}";
+
+		Object[] expected = {
+				CssToken.comment(" line one"),
+				CssToken.comment(" line two"),
+				CssToken.value("a"),
+				CssToken.blockBegin(),
+				CssToken.blockEnd()
+			};
+
+		List<CssToken> actual = new CssLexer(input, Syntax.LESS).toList();
+
+		assertArrayEquals(expected, actual.toArray());
+		assertEquals(1, actual.get(1).getLine());
+		assertEquals(2, actual.get(2).getLine());
+	}
+
+	@Test
+	public void advanceTest() {
+
+		String input = "a > b { color: red; }";
+
+		List<CssToken> expected = new CssLexer(input).toList();
+
+		CssLexer lexer = new CssLexer(input);
+		List<CssToken> actual = new ArrayList<CssToken>();
+		for (CssTokenType type = lexer.advance(); type != CssTokenType.END; type = lexer.advance()) {
+			actual.add(new CssToken(type, lexer.getTokenValue(), lexer.getTokenIndex(), lexer.getTokenLine(), lexer.getTokenColumn()));
+		}
+
+		assertEquals(expected, actual);
+		for (int i=0; i<expected.size(); i++) {
+			assertEquals(expected.get(i).getIndex(), actual.get(i).getIndex());
+			assertEquals(expected.get(i).getLine(), actual.get(i).getLine());
+			assertEquals(expected.get(i).getColumn(), actual.get(i).getColumn());
+		}
+	}
+
+	@Test
+	public void operatorValuesSharedTest() {
+
+		List<CssToken> actual = new CssLexer("a, b > c[d~=e] { f: g, h }").toList();
+
+		assertSame(actual.get(1).getValue(), actual.get(13).getValue());
+		assertSame(actual.get(3).getValue(), new CssLexer(">").next().getValue());
+		assertSame(actual.get(6).getValue(), new CssLexer("[x~=y]").toList().get(2).getValue());
+		assertSame(actual.get(11).getValue(), new CssLexer("x:y").toList().get(1).getValue());
+	}
+
+	@Test
+	public void toBufferTest() {
+
+		String input = "@media screen {\r\n/* a\r\nb */ a:hover > .b, url(x.png) { content: \"\\\"q\"; margin: -1.5em !important; } }";
+
+		List<CssToken> expected = new CssLexer(input).toList();
+		CssTokenBuffer actual = new CssLexer(input).toBuffer();
+
+		assertEquals(expected.size(), actual.size());
+		assertEquals(expected, toList(actual));
+		for (int i=0; i<expected.size(); i++) {
+			assertEquals(expected.get(i).getToken(), actual.getType(i));
+			assertEquals(expected.get(i).getValue(), actual.getValue(i));
+			assertEquals(expected.get(i).getIndex(), actual.getIndex(i));
+			assertEquals(expected.get(i).getLine(), actual.getLine(i));
+			assertEquals(expected.get(i).getColumn(), actual.getColumn(i));
+		}
+	}
+
+	@Test
+	public void toBufferReaderTest() {
+
+		String input = "a { color: red; }";
+
+		List<CssToken> expected = new CssLexer(input).toList();
+		CssTokenBuffer actual = new CssLexer(new StringReader(input)).toBuffer();
+
+		assertEquals(expected, toList(actual));
+	}
+
+	@Test
+	public void grammarLookupsTest() {
+
+		assertTrue(CssGrammar.isPseudoKeyword("hover"));
+		assertTrue(CssGrammar.isPseudoKeyword("first-letter"));
+		assertFalse(CssGrammar.isPseudoKeyword("hove"));
+
+		assertTrue(CssGrammar.isAtRuleKeyword("media"));
+		assertTrue(CssGrammar.isAtRuleKeyword("-webkit-keyframes"));
+		assertFalse(CssGrammar.isAtRuleKeyword("-foo-keyframes"));
+
+		assertEquals("keyframes", CssGrammar.removeVendorPrefix("-moz-keyframes"));
+		assertEquals("-foo-keyframes", CssGrammar.removeVendorPrefix("-foo-keyframes"));
+		assertEquals("-", CssGrammar.removeVendorPrefix("-"));
+
+		assertEquals("#FF0000", CssGrammar.decodeColor("red"));
+		assertNull(CssGrammar.decodeColor("Red"));
+		assertNull(CssGrammar.decodeColor("auto"));
+	}
+
+	@Test
+	public void grammarRangeLookupsTest() {
+
+		StringBuilder text = new StringBuilder("a:hover -webkit-keyframes red;");
+
+		assertTrue(CssGrammar.isPseudoKeyword(text, 2, 5));
+		assertFalse(CssGrammar.isPseudoKeyword(text, 2, 4));
+		assertTrue(CssGrammar.isAtRuleKeyword(text, 8, 17));
+		assertEquals(8, CssGrammar.vendorPrefixLength(text, 8, 17));
+		assertEquals(0, CssGrammar.vendorPrefixLength(text, 16, 9));
+		assertEquals("#FF0000", CssGrammar.decodeColor(text, 26, 3));
+		assertNull(CssGrammar.decodeColor(text, 26, 4));
+		assertTrue(CharUtility.isOperator(text, 1, 1));
+		assertFalse(CharUtility.isOperator(text, 0, 2));
+	}
+
+	private static List<CssToken> toList(CssTokenBuffer buffer) {
+		List<CssToken> list = new ArrayList<CssToken>();
+		for (CssToken token : buffer) {
+			list.add(token);
+		}
+		return list;
+	}
+
 	@SuppressWarnings("unused")
 	private void dumpLists(Object[] expected, Object[] actual) {
 
@@ -1512,4 +1686,88 @@ public class CssLexerTest {
 			System.err.println(String.valueOf(token));
 		}
 	}
+
+	@Test
+	public void lineIndexTest() {
+
+		String input = "a {\r\n\tcolor: red;\r}\n\nb { margin: 0; }";
+
+		CssLexer lexer = new CssLexer(input);
+		LineIndex lines = lexer.getLineIndex();
+
+		// lines beyond the lexer position are scanned on demand
+		assertEquals("b { margin: 0; }", lines.getLineText(4));
+		assertEquals(21, lines.getLineStart(4));
+
+		lexer.toList();
+
+		assertEquals("a {", lines.getLineText(0));
+		assertEquals("\tcolor: red;", lines.getLineText(1));
+		assertEquals("}", lines.getLineText(2));
+		assertEquals("", lines.getLineText(3));
+		assertNull(lines.getLineText(5));
+		assertEquals(-1, lines.getLineStart(-1));
+
+		assertEquals(0, lines.findLine(0));
+		assertEquals(0, lines.findLine(4));
+		assertEquals(1, lines.findLine(5));
+		assertEquals(2, lines.findLine(18));
+		assertEquals(4, lines.findLine(21));
+		assertEquals(-1, lines.findLine(input.length()+1));
+	}
+
+	@Test
+	public void lineIndexReaderTest() {
+
+		assertNull(new CssLexer(new StringReader("a{}")).getLineIndex());
+	}
+
+	@Test
+	public void sourceLineTest() {
+
+		String input = "a { color: red; }\nb { content: \"x }";
+
+		CssLexer lexer = new CssLexer(input);
+		try {
+			lexer.toList();
+			fail("Expected SyntaxException");
+
+		} catch (SyntaxException ex) {
+			assertEquals(1, ex.getLine());
+			assertEquals("b { content: \"x }", ex.getSourceLine());
+		}
+	}
+
+	@Test
+	public void charArrayRangeTest() {
+
+		char[] input = "a{}".toCharArray();
+		assertEquals(CssTokenType.VALUE, new CssLexer(input, 0, 1, null).advance());
+
+		int[][] ranges = { { -1, 2 }, { 0, -1 }, { 2, 2 } };
+		for (int[] range : ranges) {
+			try {
+				new CssLexer(input, range[0], range[1], null);
+				fail("Expected IndexOutOfBoundsException");
+
+			} catch (IndexOutOfBoundsException ex) {
+				// not an array index failure from reading before the check
+				assertEquals(IndexOutOfBoundsException.class, ex.getClass());
+			}
+		}
+	}
+
+	@Test
+	public void crlfTest() {
+
+		CssLexer lexer = new CssLexer("a\r\nb\rc\nd");
+		List<CssToken> tokens = lexer.toList();
+
+		assertEquals(4, tokens.size());
+		assertEquals(1, tokens.get(1).getLine());
+		assertEquals(2, tokens.get(2).getLine());
+		assertEquals(3, tokens.get(3).getLine());
+		assertEquals(tokens.get(1).getColumn(), tokens.get(2).getColumn());
+		assertEquals(tokens.get(1).getColumn(), tokens.get(3).getColumn());
+	}
 }
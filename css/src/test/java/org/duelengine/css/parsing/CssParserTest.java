@@ -3,6 +3,11 @@ package org.duelengine.css.parsing;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
 
 import org.duelengine.css.ast.AccessorNode;
 import org.duelengine.css.ast.AtRuleNode;
@@ -11,6 +16,9 @@ import org.duelengine.css.ast.ColorNode;
 import org.duelengine.css.ast.CombinatorNode;
 import org.duelengine.css.ast.CombinatorType;
 import org.duelengine.css.ast.CommentNode;
+import org.duelengine.css.ast.ContainerNode;
+import org.duelengine.css.ast.CssNode;
+import org.duelengine.css.ast.CssVisitor;
 import org.duelengine.css.ast.DeclarationNode;
 import org.duelengine.css.ast.FunctionNode;
 import org.duelengine.css.ast.NumericNode;
@@ -20,6 +28,7 @@ import org.duelengine.css.ast.SelectorNode;
 import org.duelengine.css.ast.StringNode;
 import org.duelengine.css.ast.StyleSheetNode;
 import org.duelengine.css.ast.ValueNode;
+import org.duelengine.css.codegen.CssFormatter;
 import org.duelengine.css.parsing.CssParser.Syntax;
 import org.junit.*;
 
@@ -2456,4 +2465,335 @@ public class CssParserTest {
 
 		assertEquals(expected, actual);
 	}
+
+	@Test
+	public void streamEventsTest() throws IOException {
+
+		String input =
+			"@import url(foo.css);\n" +
+			"/* note */\n" +
+			"a, b { color: red; }\n" +
+			"@media print { p { margin: 0; } }";
+
+		final StringBuilder events = new StringBuilder();
+		new CssParser().parse(new CssLexer(input), new CssHandler() {
+			@Override
+			public void startAtRule(AtRuleNode atRule) {
+				events.append("@").append(atRule.getKeyword()).append(atRule.getBlock() != null ? "{" : ";");
+			}
+
+			@Override
+			public void startRuleSet(RuleSetNode ruleSet) {
+				events.append("rule");
+			}
+
+			@Override
+			public void selector(SelectorNode selector) {
+				events.append('[').append(selector).append(']');
+			}
+
+			@Override
+			public void declaration(DeclarationNode declaration) {
+				events.append('{').append(declaration.getIdent()).append('}');
+			}
+
+			@Override
+			public void comment(CommentNode comment) {
+				events.append("/*").append(comment.getValue()).append("*/");
+			}
+
+			@Override
+			public void endBlock() {
+				events.append(';');
+			}
+		});
+
+		String expected = "@import;/* note */rule[a][b]{color};@media{rule[p]{margin};;";
+
+		assertEquals(expected, events.toString());
+	}
+
+	@Test(expected=UnsupportedOperationException.class)
+	public void streamLessTest() throws IOException {
+		new CssParser(Syntax.LESS).parse(new CssLexer("a{}", Syntax.LESS), new CssStreamHandlerStub());
+	}
+
+	private static class CssStreamHandlerStub implements CssHandler {
+		@Override
+		public void startAtRule(AtRuleNode atRule) {}
+		@Override
+		public void startRuleSet(RuleSetNode ruleSet) {}
+		@Override
+		public void selector(SelectorNode selector) {}
+		@Override
+		public void declaration(DeclarationNode declaration) {}
+		@Override
+		public void comment(CommentNode comment) {}
+		@Override
+		public void endBlock() {}
+	}
+
+	@Test
+	public void visitorTest() throws IOException {
+
+		String input = "a, b > c { color: red; margin: 0 auto; } @media print { p { font: 12px serif; } }";
+
+		StyleSheetNode stylesheet = new CssParser().parse(new CssLexer(input));
+
+		final StringBuilder actual = new StringBuilder();
+		stylesheet.accept(new CssVisitor<Void, StringBuilder>() {
+			@Override
+			public Void visitNode(CssNode node, StringBuilder context) {
+				return null;
+			}
+
+			@Override
+			public Void visitContainer(ContainerNode node, StringBuilder context) {
+				for (CssNode child : node.getChildren()) {
+					child.accept(this, context);
+				}
+				return null;
+			}
+
+			@Override
+			public Void visitAtRule(AtRuleNode node, StringBuilder context) {
+				context.append('@').append(node.getKeyword()).append(' ');
+				return node.getBlock().accept(this, context);
+			}
+
+			@Override
+			public Void visitRuleSet(RuleSetNode node, StringBuilder context) {
+				context.append(node.getSelectors().size()).append(' ');
+				return visitBlock(node, context);
+			}
+
+			@Override
+			public Void visitDeclaration(DeclarationNode node, StringBuilder context) {
+				context.append(node.getIdent()).append('=').append(node.childCount()).append(' ');
+				return null;
+			}
+		}, actual);
+
+		assertEquals("2 color=1 margin=2 @media 1 font=2 ", actual.toString());
+	}
+
+	@Test
+	public void tokenBufferTest() throws IOException {
+
+		String input = "a, b > c { color: red; margin: 0 auto; } @media print { p { font: 12px \"Times New Roman\", serif; } }";
+
+		StyleSheetNode expected = new CssParser().parse(new CssLexer(input));
+		StyleSheetNode actual = new CssParser().parse(new CssLexer(input).toBuffer());
+
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void recoverMultipleErrorsTest() throws IOException {
+
+		String input = "{x:1} a{x:1}\n@media x { p { color: red; } ) }\nc{x:(1 d{y:2}}\ne{z:3}";
+
+		List<SyntaxException> errors = new ArrayList<SyntaxException>();
+		StyleSheetNode actual = new CssParser().parse(new CssLexer(input), errors);
+
+		StringBuilder output = new StringBuilder();
+		new CssFormatter().write(output, actual, null);
+
+		assertEquals("a{x:1;}@media x{p{color:red;}}e{z:3;}", output.toString());
+		assertEquals(3, errors.size());
+		assertEquals(0, errors.get(0).getLine());
+		assertEquals(1, errors.get(1).getLine());
+		assertEquals(2, errors.get(2).getLine());
+	}
+
+	@Test
+	public void recoverStrayBlockEndTest() throws IOException {
+
+		String input = "a{x:1}} b{y:2}";
+
+		List<SyntaxException> errors = new ArrayList<SyntaxException>();
+		StyleSheetNode actual = new CssParser().parse(new CssLexer(input), errors);
+
+		StringBuilder output = new StringBuilder();
+		new CssFormatter().write(output, actual, null);
+
+		assertEquals("a{x:1;}b{y:2;}", output.toString());
+		assertEquals(1, errors.size());
+	}
+
+	@Test
+	public void recoverLexerErrorTest() throws IOException {
+
+		String input = "a{color:red} b{content:\"x";
+
+		List<SyntaxException> errors = new ArrayList<SyntaxException>();
+		StyleSheetNode actual = new CssParser().parse(new CssLexer(input), errors);
+
+		StringBuilder output = new StringBuilder();
+		new CssFormatter().write(output, actual, null);
+
+		assertEquals("a{color:red;}", output.toString());
+		assertEquals(1, errors.size());
+		assertEquals("Unterminated string value", errors.get(0).getMessage());
+	}
+
+	@Test
+	public void recoverNoErrorsTest() throws IOException {
+
+		String input = "a, b > c { color: red; margin: 0 auto; } @media print { p { font: 12px serif; } }";
+
+		List<SyntaxException> errors = new ArrayList<SyntaxException>();
+		StyleSheetNode actual = new CssParser().parse(new CssLexer(input), errors);
+
+		assertEquals(new CssParser().parse(new CssLexer(input)), actual);
+		assertTrue(errors.isEmpty());
+	}
+
+	@Test
+	public void sourceLineTest() throws IOException {
+
+		String input = "a { color: red; }\r\n{ margin: 0; }";
+
+		try {
+			new CssParser().parse(new CssLexer(input));
+			fail("Expected SyntaxException");
+
+		} catch (SyntaxException ex) {
+			assertEquals(1, ex.getLine());
+			assertEquals("{ margin: 0; }", ex.getSourceLine());
+		}
+
+		List<SyntaxException> errors = new ArrayList<SyntaxException>();
+		new CssParser().parse(new CssLexer(input), errors);
+
+		assertEquals(1, errors.size());
+		assertEquals("{ margin: 0; }", errors.get(0).getSourceLine());
+
+		// no source available from a Reader
+		errors.clear();
+		new CssParser().parse(new CssLexer(new StringReader(input)), errors);
+		assertNull(errors.get(0).getSourceLine());
+	}
+
+	@Test
+	public void nodePositionTest() {
+
+		int[][] positions = {
+			{ -1, -1, -1 },
+			{ 0, 0, 0 },
+			{ 12345, 67, 8 },
+			// minified: one long line
+			{ 50000000, 0, 50000000 },
+			// many short lines
+			{ 50000000, 5000000, 10 },
+			{ Integer.MAX_VALUE, 0, 1<<20 },
+		};
+
+		for (int[] position : positions) {
+			ValueNode node = new ValueNode("x", position[0], position[1], position[2]);
+			assertEquals(position[0], node.getIndex());
+			assertEquals(position[1], node.getLine());
+			assertEquals(position[2], node.getColumn());
+		}
+
+		// exact throughout the first 256KB however the lines fall
+		int limit = (1<<18)-3;
+		ValueNode node = new ValueNode("x", limit, limit/2, limit/2);
+		assertEquals(limit, node.getIndex());
+		assertEquals(limit/2, node.getLine());
+		assertEquals(limit/2, node.getColumn());
+
+		// index stays exact when line and column cannot both fit, the column becomes unknown
+		node = new ValueNode("x", Integer.MAX_VALUE, 1<<20, Integer.MAX_VALUE-1);
+		assertEquals(Integer.MAX_VALUE, node.getIndex());
+		assertEquals(1<<20, node.getLine());
+		assertEquals(-1, node.getColumn());
+
+		// then the line
+		node = new ValueNode("x", Integer.MAX_VALUE, Integer.MAX_VALUE-1, 1);
+		assertEquals(Integer.MAX_VALUE, node.getIndex());
+		assertEquals(-1, node.getLine());
+		assertEquals(1, node.getColumn());
+	}
+
+	@Test
+	public void childListTest() {
+
+		ContainerNode container = new ContainerNode(0, 0, 0);
+		assertFalse(container.hasChildren());
+		assertNull(container.getFirstChild());
+
+		ValueNode a = new ValueNode("a");
+		ValueNode b = new ValueNode("b");
+		ValueNode c = new ValueNode("c");
+
+		container.appendChild(a);
+		assertSame(a, container.getFirstChild());
+		assertSame(a, container.getLastChild());
+		assertSame(container, a.getParent());
+
+		container.appendChild(b);
+		container.getChildren().add(0, c);
+		assertEquals(3, container.childCount());
+		assertSame(c, container.getChildren().get(0));
+		assertSame(b, container.getLastChild());
+
+		assertTrue(container.removeChild(c));
+		assertNull(c.getParent());
+		assertTrue(container.removeChild(a));
+		assertEquals(1, container.childCount());
+		assertSame(b, container.getFirstChild());
+
+		assertTrue(container.replaceChild(c, b));
+		assertSame(c, container.getFirstChild());
+		assertSame(container, c.getParent());
+
+		for (int i=0; i<100; i++) {
+			container.appendChild(new ValueNode(String.valueOf(i)));
+		}
+		assertEquals(101, container.childCount());
+		assertEquals(new ValueNode("99"), container.getLastChild());
+
+		container.getChildren().clear();
+		assertFalse(container.hasChildren());
+		assertNull(container.getLastChild());
+	}
+
+	@Test
+	public void childListModifiedTest() {
+
+		ContainerNode container = new ContainerNode(0, 0, 0);
+		container.appendChild(new ValueNode("a"));
+		container.appendChild(new ValueNode("b"));
+
+		// modified directly
+		Iterator<CssNode> it = container.getChildren().iterator();
+		it.next();
+		container.appendChild(new ValueNode("c"));
+		try {
+			it.next();
+			fail("expected ConcurrentModificationException");
+		} catch (ConcurrentModificationException ex) {
+			// expected
+		}
+
+		// modified through another view
+		it = container.getChildren().iterator();
+		it.next();
+		container.getChildren().remove(0);
+		try {
+			it.next();
+			fail("expected ConcurrentModificationException");
+		} catch (ConcurrentModificationException ex) {
+			// expected
+		}
+
+		// modified through the iterator itself
+		it = container.getChildren().iterator();
+		it.next();
+		it.remove();
+		assertEquals(new ValueNode("c"), it.next());
+		assertFalse(it.hasNext());
+		assertEquals(1, container.childCount());
+	}
 }